@@ -0,0 +1,47 @@
+package us.luosl.lslt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import us.luosl.lslt.concurrent.JobExecutor;
+import us.luosl.lslt.concurrent.JobObserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 10^3 到 10^7 个任务的 job 从开始提交到 awaitComplete 返回的耗时
+ * 每次调用是一个完整的 job, 使用单次计时模式, 大 job 不会被 JMH 的迭代时间截断
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AwaitCompleteBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int tasks;
+
+    @Param({"4"})
+    private int poolSize;
+
+    private JobExecutor jobExecutor;
+
+    @Setup
+    public void setup(){
+        jobExecutor = JobExecutor.create(poolSize, poolSize);
+    }
+
+    @TearDown
+    public void tearDown(){
+        jobExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public long awaitComplete(){
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer i) -> { }, "await");
+        jobExecutor.submitAll(IntStream.range(0, tasks).boxed(), i -> i, observer);
+        jobExecutor.awaitComplete(observer);
+        return observer.getCompleteCount();
+    }
+}
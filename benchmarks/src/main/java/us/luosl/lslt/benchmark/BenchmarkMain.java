@@ -0,0 +1,38 @@
+package us.luosl.lslt.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口, 参数与 JMH 命令行相同
+ * 未指定时默认开启 gc 分配统计(-prof gc), 并把结果以 JSON 写入 jmh-result.json, 便于比较不同版本的结果
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if(cli.shouldHelp()){
+            cli.showHelp();
+            return;
+        }
+        if(cli.shouldList()){
+            new Runner(cli).list();
+            return;
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cli);
+        if(cli.getProfilers().isEmpty()){
+            builder.addProfiler(GCProfiler.class);
+        }
+        if(!cli.getResultFormat().hasValue()){
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if(!cli.getResult().hasValue()){
+            builder.result("jmh-result.json");
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package us.luosl.lslt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import us.luosl.lslt.lang.ByteSlice;
+import us.luosl.lslt.lang.FileUtils;
+import us.luosl.lslt.lang.OffsetLineReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * FileUtils 各种按行读取方式的吞吐, 每次调用读完整个文件
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FileLinesBenchmark {
+
+    @Param({"1000000"})
+    private int lines;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("lslt-bench", ".txt");
+        file.deleteOnExit();
+        Random random = new Random(42);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            for(int i = 0; i < lines; i++){
+                writer.print(i);
+                for(int j = 0; j < 10; j++){
+                    writer.print(' ');
+                    writer.print(random.nextInt(1000));
+                }
+                writer.print('\n');
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        file.delete();
+    }
+
+    @Benchmark
+    public long lineStream() throws IOException {
+        try(Stream<String> stream = FileUtils.asLineStream(file, "UTF-8")){
+            return stream.mapToLong(String::length).sum();
+        }
+    }
+
+    @Benchmark
+    public long lineIterator() throws IOException {
+        long length = 0;
+        Iterator<String> iterator = FileUtils.asLineIterator(file, "UTF-8");
+        while(iterator.hasNext()){
+            length += iterator.next().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long offsetLineReader() throws IOException {
+        long length = 0;
+        try(OffsetLineReader reader = FileUtils.openOffsetLineReader(file, "UTF-8", 0L)){
+            String line;
+            while(null != (line = reader.readLine())){
+                length += line.length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 不解码, 每行不创建对象
+     */
+    @Benchmark
+    public long byteLines() throws IOException {
+        LongAdder length = new LongAdder();
+        FileUtils.forEachByteLine(file, "UTF-8", (ByteSlice line) -> length.add(line.length()));
+        return length.sum();
+    }
+
+    @Benchmark
+    public long mappedLineStream() throws IOException {
+        return FileUtils.asMappedLineStream(file, "UTF-8").mapToLong(String::length).sum();
+    }
+
+    @Benchmark
+    public long mappedLineStreamParallel() throws IOException {
+        return FileUtils.asMappedLineStream(file, "UTF-8").parallel().mapToLong(String::length).sum();
+    }
+}
@@ -0,0 +1,64 @@
+package us.luosl.lslt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import us.luosl.lslt.lang.CollectionUtils;
+import us.luosl.lslt.lang.IntList;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * CollectionUtils.mkStr 随元素个数的扩展性, 线性实现的单个元素耗时应与元素个数无关
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MkStrBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private List<Integer> boxed;
+    private int[] primitive;
+    private IntList intList;
+
+    @Setup
+    public void setup(){
+        primitive = IntStream.range(0, size).toArray();
+        boxed = IntStream.range(0, size).boxed().collect(Collectors.toList());
+        intList = IntList.of(primitive);
+    }
+
+    @Benchmark
+    public String boxedList(){
+        return CollectionUtils.mkStr(boxed, ",").orElse("");
+    }
+
+    @Benchmark
+    public String boxedParallelStream(){
+        return CollectionUtils.mkStr(boxed.parallelStream(), ",").orElse("");
+    }
+
+    @Benchmark
+    public String primitiveArray(){
+        return CollectionUtils.mkStr(primitive, ",").orElse("");
+    }
+
+    @Benchmark
+    public String primitiveList(){
+        return CollectionUtils.mkStr(intList, "(", ",", ")");
+    }
+
+    /**
+     * 对照: JDK 的 Collectors.joining
+     */
+    @Benchmark
+    public String collectorsJoining(){
+        return boxed.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
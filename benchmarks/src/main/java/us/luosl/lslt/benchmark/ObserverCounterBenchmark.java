@@ -0,0 +1,88 @@
+package us.luosl.lslt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import us.luosl.lslt.concurrent.JobObserver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobObserver 计数器在 1 到 64 个线程同时更新时的争用
+ * 每次调用模拟一个任务的完整计数: 提交, 开始, 完成; 计数方法是 protected 的, 通过子类调用
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ObserverCounterBenchmark {
+
+    /**
+     * 与执行器计数一个任务时的调用顺序相同
+     */
+    static final class CountingObserver extends JobObserver<Object> {
+
+        CountingObserver(String jobName) {
+            super(jobName);
+        }
+
+        void countTask(){
+            incrSubmitCount();
+            incrStartedCount();
+            incrCompleteCount();
+        }
+    }
+
+    private CountingObserver observer;
+
+    @Setup
+    public void setup(){
+        observer = new CountingObserver("counter");
+    }
+
+    private void countTask(){
+        observer.countTask();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void count01(){
+        countTask();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void count04(){
+        countTask();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void count16(){
+        countTask();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void count64(){
+        countTask();
+    }
+
+    /**
+     * 16 个线程计数的同时由 1 个线程读取快照, 快照需要汇总所有分段
+     */
+    @Benchmark
+    @Group("countWithSnapshot")
+    @GroupThreads(16)
+    public void groupCount(){
+        countTask();
+    }
+
+    @Benchmark
+    @Group("countWithSnapshot")
+    @GroupThreads(1)
+    public void groupSnapshot(Blackhole blackhole){
+        blackhole.consume(observer.snapshot());
+    }
+}
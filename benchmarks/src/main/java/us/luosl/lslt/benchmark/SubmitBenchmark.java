@@ -0,0 +1,93 @@
+package us.luosl.lslt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import us.luosl.lslt.concurrent.JobExecutor;
+import us.luosl.lslt.concurrent.JobObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 单个任务的提交开销: 每次调用提交 TASKS 个空任务并等待结束, 结果为平摊到每个任务的耗时;
+ * 同时对比共享队列与 work-stealing 两种线程池执行大量小任务的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SubmitBenchmark {
+
+    private static final int TASKS = 10_000;
+
+    @Param({"4"})
+    private int poolSize;
+
+    /**
+     * shared: 共享队列的线程池; workStealing: 每个工作线程各自一个队列
+     */
+    @Param({"shared", "workStealing"})
+    private String executor;
+
+    private JobExecutor jobExecutor;
+
+    @Setup
+    public void setup(){
+        jobExecutor = "workStealing".equals(executor) ? JobExecutor.createWorkStealing(poolSize)
+                : JobExecutor.create(poolSize, poolSize);
+    }
+
+    @TearDown
+    public void tearDown(){
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * 逐个提交
+     */
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public long submitWithJobObserver(){
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer i) -> { }, "submit");
+        for(int i = 0; i < TASKS; i++){
+            int value = i;
+            jobExecutor.submitWithJobObserver(() -> value, observer);
+        }
+        jobExecutor.awaitComplete(observer);
+        return observer.getCompleteCount();
+    }
+
+    /**
+     * 批量提交, 批次大小自适应
+     */
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public long submitAll(){
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer i) -> { }, "submit all");
+        jobExecutor.submitAll(IntStream.range(0, TASKS).boxed(), i -> i, observer);
+        jobExecutor.awaitComplete(observer);
+        return observer.getCompleteCount();
+    }
+
+    /**
+     * 对照: 直接使用线程池提交 Future
+     */
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void executorFuture(Blackhole blackhole) throws ExecutionException, InterruptedException {
+        List<Future<Integer>> futures = new ArrayList<>(TASKS);
+        for(int i = 0; i < TASKS; i++){
+            int value = i;
+            futures.add(jobExecutor.submit(() -> value));
+        }
+        for(Future<Integer> future : futures){
+            blackhole.consume(future.get());
+        }
+    }
+}
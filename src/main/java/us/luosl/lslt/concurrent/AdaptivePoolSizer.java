@@ -0,0 +1,361 @@
+package us.luosl.lslt.concurrent;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 按实测吞吐量调整线程数的爬山控制器, 通过 {@link JobExecutor#enableAdaptiveSizing(AdaptivePoolSizer)} 启用
+ * 在共享调度线程中按采样间隔统计所有 job 结束的任务数得到吞吐量, 每次调整 step 个线程后比较调整前后的吞吐量:
+ * 变化超过阈值才认为变好或变差, 变好时继续同方向调整, 变差时退回;
+ * 增加线程没有明显收益时退回, 减少线程没有明显损失时保留, 因此在吞吐量相同的线程数中倾向于较少的线程。
+ * 吞吐量稳定 probeSamples 个采样后再次试探, 以跟随负载的变化; 试探连续被退回时试探间隔加倍(最多 MAX_PROBE_BACKOFF 倍),
+ * 避免在最优线程数附近反复试探; 调整后的第一个采样包含线程启停的过渡期, 不参与比较。
+ * 底层线程池关闭后自动停止, 也可以通过 {@link JobExecutor#shutdown()} 或 {@link JobExecutor#disableAdaptiveSizing()} 停止。
+ * 调整决策输出到 java.util.logging 的 us.luosl.lslt.concurrent.AdaptivePoolSizer
+ */
+public class AdaptivePoolSizer {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptivePoolSizer.class.getName());
+    // 试探间隔最多退避到 probeSamples 的倍数
+    private static final int MAX_PROBE_BACKOFF = 16;
+
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private Duration sampleInterval = Duration.ofSeconds(1);
+    private double threshold = 0.1D;
+    private int step = 1;
+    private int probeSamples = 10;
+
+    private JobExecutor jobExecutor;
+    private ThreadPoolExecutor pool;
+    private volatile ScheduledFuture<?> sampleFuture;
+    // 各 job 上次采样时已结束的任务数, 由自身的锁保护; job 结束时由 jobFinished 移除并结算
+    private final Map<JobObserver<?>, Long> finishedCounts = new IdentityHashMap<>();
+    // 上次采样之后结束的 job 在采样区间内结束的任务数, 由 finishedCounts 的锁保护
+    private long finishedByCompletedJobs;
+    // 以下字段只在调度线程中使用
+    private long lastSampleNanos;
+    private int direction = 1;
+    // 调整前所在线程数的吞吐量, 没有进行中的调整时为 NaN
+    private double beforeMove = Double.NaN;
+    // 当前线程数的吞吐量, 未知时为 NaN
+    private double baseline = Double.NaN;
+    private boolean settling;
+    private int stableSamples;
+    // 当前的试探间隔, 试探被退回时加倍, 调整有效时恢复为 probeSamples
+    private int probeInterval;
+    private volatile double lastThroughput;
+
+    private AdaptivePoolSizer(int minPoolSize, int maxPoolSize) {
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * @param minPoolSize 最小线程数
+     * @param maxPoolSize 最大线程数
+     * @return AdaptivePoolSizer
+     */
+    public static AdaptivePoolSizer of(int minPoolSize, int maxPoolSize){
+        if(minPoolSize <= 0 || maxPoolSize < minPoolSize){
+            throw new IllegalArgumentException(String.format("invalid pool size bounds [%d, %d]!",
+                    minPoolSize, maxPoolSize));
+        }
+        return new AdaptivePoolSizer(minPoolSize, maxPoolSize);
+    }
+
+    /**
+     * 采样间隔, 应大于单个任务的典型耗时, 默认 1 秒
+     * @param sampleInterval sampleInterval
+     * @return AdaptivePoolSizer
+     */
+    public AdaptivePoolSizer setSampleInterval(Duration sampleInterval) {
+        checkNotStarted();
+        if(sampleInterval.isNegative() || sampleInterval.isZero()){
+            throw new IllegalArgumentException("sampleInterval must be positive!");
+        }
+        this.sampleInterval = sampleInterval;
+        return this;
+    }
+
+    /**
+     * 吞吐量的相对变化超过阈值才认为有变化, 默认 0.1
+     * @param threshold threshold
+     * @return AdaptivePoolSizer
+     */
+    public AdaptivePoolSizer setThreshold(double threshold) {
+        checkNotStarted();
+        if(!(threshold >= 0D && threshold < 1D)){
+            throw new IllegalArgumentException("threshold must be in [0, 1)!");
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * 每次调整的线程数, 默认 1
+     * @param step step
+     * @return AdaptivePoolSizer
+     */
+    public AdaptivePoolSizer setStep(int step) {
+        checkNotStarted();
+        if(step <= 0){
+            throw new IllegalArgumentException("step must be positive!");
+        }
+        this.step = step;
+        return this;
+    }
+
+    /**
+     * 吞吐量稳定多少个采样后再次试探, 默认 10
+     * @param probeSamples probeSamples
+     * @return AdaptivePoolSizer
+     */
+    public AdaptivePoolSizer setProbeSamples(int probeSamples) {
+        checkNotStarted();
+        if(probeSamples <= 0){
+            throw new IllegalArgumentException("probeSamples must be positive!");
+        }
+        this.probeSamples = probeSamples;
+        return this;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * 最近一个采样区间内每秒结束的任务数
+     * @return double
+     */
+    public double getLastThroughput() {
+        return lastThroughput;
+    }
+
+    /**
+     * 当前的线程数
+     * @return 未启动时返回 -1
+     */
+    public int getPoolSize(){
+        ThreadPoolExecutor currentPool = pool;
+        return null == currentPool ? -1 : currentPool.getCorePoolSize();
+    }
+
+    private void checkNotStarted(){
+        if(null != jobExecutor){
+            throw new RuntimeException("adaptive pool sizer has been started!");
+        }
+    }
+
+    synchronized void start(JobExecutor jobExecutor, ThreadPoolExecutor pool){
+        checkNotStarted();
+        if(pool.isShutdown()){
+            throw new RuntimeException("executor has been shut down!");
+        }
+        this.jobExecutor = jobExecutor;
+        this.pool = pool;
+        this.probeInterval = probeSamples;
+        int initial = Math.max(minPoolSize, Math.min(maxPoolSize, pool.getCorePoolSize()));
+        resize(initial);
+        LOGGER.info(String.format("[%s] adaptive sizing started, pool size %d in [%d, %d]",
+                jobExecutor.getName(), initial, minPoolSize, maxPoolSize));
+        long intervalNanos = sampleInterval.toNanos();
+        lastSampleNanos = System.nanoTime();
+        sampleFuture = SharedScheduler.get().scheduleAtFixedRate(this::tick, intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 是否正在调整线程数
+     * @return boolean
+     */
+    public boolean isRunning(){
+        return null != sampleFuture;
+    }
+
+    synchronized void stop(){
+        if(null != sampleFuture){
+            sampleFuture.cancel(false);
+            sampleFuture = null;
+            synchronized (finishedCounts){
+                finishedCounts.clear();
+                finishedByCompletedJobs = 0L;
+            }
+            LOGGER.info(String.format("[%s] adaptive sizing stopped, pool size %d",
+                    jobExecutor.getName(), getPoolSize()));
+        }
+    }
+
+    private void tick(){
+        try {
+            sample();
+        } catch (RuntimeException e) {
+            // 异常会使定时任务终止, 只记录不中断调整
+            LOGGER.log(Level.WARNING, String.format("[%s] adaptive sizing sample failed", jobExecutor.getName()), e);
+        }
+    }
+
+    /**
+     * job 结束时结算其上次采样之后结束的任务数, 在采样区间内开始并结束的 job 也能被计入吞吐量
+     * @param job 已结束的 job
+     */
+    void jobFinished(JobObserver<?> job){
+        long count = job.snapshot().getFinishedCount();
+        synchronized (finishedCounts){
+            Long seen = finishedCounts.remove(job);
+            finishedByCompletedJobs += count - (null == seen ? 0L : seen);
+        }
+    }
+
+    /**
+     * 统计采样区间内结束的任务数: 活跃 job 按计数的增量统计, 区间内结束的 job 按 jobFinished 结算的数量统计
+     * @return 结束的任务数
+     */
+    long finishedSinceLastSample(){
+        List<JobObserver<?>> jobs = jobExecutor.getActiveJobs();
+        synchronized (finishedCounts){
+            for(JobObserver<?> job: jobs){
+                // 已结束的 job 由 jobFinished 结算, 不再登记
+                if(job.getStatus() != JobStatus.COMPLETE){
+                    finishedCounts.putIfAbsent(job, 0L);
+                }
+            }
+            long finished = finishedByCompletedJobs;
+            finishedByCompletedJobs = 0L;
+            for(Map.Entry<JobObserver<?>, Long> entry: finishedCounts.entrySet()){
+                long count = entry.getKey().snapshot().getFinishedCount();
+                finished += count - entry.getValue();
+                entry.setValue(count);
+            }
+            return finished;
+        }
+    }
+
+    private boolean hasActiveJobs(){
+        synchronized (finishedCounts){
+            return !finishedCounts.isEmpty();
+        }
+    }
+
+    private void sample(){
+        if(pool.isShutdown()){
+            stop();
+            return;
+        }
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9D;
+        lastSampleNanos = now;
+        long finished = finishedSinceLastSample();
+        double throughput = seconds > 0 ? finished / seconds : 0D;
+        lastThroughput = throughput;
+        int size = pool.getCorePoolSize();
+        if(settling){
+            settling = false;
+            return;
+        }
+        if(finished == 0 && !hasActiveJobs()){
+            // 没有 job 时不调整, 下一个 job 重新开始比较
+            beforeMove = Double.NaN;
+            baseline = Double.NaN;
+            stableSamples = 0;
+            probeInterval = probeSamples;
+            return;
+        }
+        if(!Double.isNaN(beforeMove)){
+            judgeMove(size, throughput);
+            return;
+        }
+        if(Double.isNaN(baseline)){
+            baseline = throughput;
+            return;
+        }
+        // 稳定状态下平滑吞吐量, 到达试探周期后尝试调整
+        baseline = (baseline + throughput) / 2;
+        if(++stableSamples < probeInterval){
+            return;
+        }
+        stableSamples = 0;
+        // 队列为空时增加线程不会提高吞吐量
+        int probeDirection = pool.getQueue().isEmpty() ? -1 : direction;
+        if(!move(size, probeDirection, baseline, "probe")){
+            move(size, -probeDirection, baseline, "probe");
+        }
+    }
+
+    /**
+     * 比较调整前后的吞吐量, 决定继续、保留还是退回
+     */
+    private void judgeMove(int size, double throughput){
+        double before = beforeMove;
+        beforeMove = Double.NaN;
+        double change = before > 0 ? (throughput - before) / before : (throughput > 0 ? 1D : 0D);
+        if(change > threshold){
+            log(Level.INFO, "throughput %.2f -> %.2f/s (%+.1f%%) at %d threads, continue", before, throughput,
+                    change * 100, size);
+            baseline = throughput;
+            probeInterval = probeSamples;
+            move(size, direction, throughput, "continue");
+        }else if(change < -threshold || direction > 0){
+            // 变差, 或增加线程没有明显收益
+            probeInterval = Math.min(probeInterval * 2, probeSamples * MAX_PROBE_BACKOFF);
+            log(Level.INFO, "throughput %.2f -> %.2f/s (%+.1f%%) at %d threads, revert, next probe after %d samples",
+                    before, throughput, change * 100, size, probeInterval);
+            // 退回后下一次试探沿退回的方向进行
+            baseline = before;
+            move(size, -direction, Double.NaN, "revert");
+        }else{
+            // 减少线程没有明显损失, 保留
+            log(Level.FINE, "throughput %.2f -> %.2f/s (%+.1f%%) at %d threads, keep", before, throughput,
+                    change * 100, size);
+            baseline = throughput;
+            probeInterval = probeSamples;
+        }
+    }
+
+    /**
+     * 向 moveDirection 调整 step 个线程
+     * @param before 调整前的吞吐量, 为 NaN 时不评估本次调整
+     * @return 已经在边界上无法调整时返回 false
+     */
+    private boolean move(int size, int moveDirection, double before, String reason){
+        int target = Math.max(minPoolSize, Math.min(maxPoolSize, size + moveDirection * step));
+        if(target == size){
+            return false;
+        }
+        direction = moveDirection;
+        beforeMove = before;
+        settling = true;
+        stableSamples = 0;
+        resize(target);
+        log(Level.INFO, "%s: pool size %d -> %d", reason, size, target);
+        return true;
+    }
+
+    private void resize(int size){
+        if(size >= pool.getCorePoolSize()){
+            pool.setMaximumPoolSize(Math.max(size, pool.getMaximumPoolSize()));
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }else{
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }
+    }
+
+    private void log(Level level, String format, Object... args){
+        if(LOGGER.isLoggable(level)){
+            LOGGER.log(level, String.format("[%s] %s", jobExecutor.getName(), String.format(format, args)));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * 根据实测的单个元素耗时自适应调整批量提交的批次大小
+ * 目标是让每个批次的执行时间接近 {@link #TARGET_BATCH_NANOS}, 使调度开销可以忽略, 同时批次又不至于大到影响负载均衡
+ */
+class BatchSizer {
+
+    static final long TARGET_BATCH_NANOS = 500_000L;
+    static final int INITIAL_BATCH_SIZE = 16;
+    static final int MAX_BATCH_SIZE = 8192;
+
+    // 单个元素耗时的指数移动平均, 0 表示尚无测量结果; 允许并发写入时丢失部分样本
+    private volatile double avgItemNanos = 0D;
+
+    /**
+     * 记录一个批次的执行耗时
+     * @param elapsedNanos elapsedNanos
+     * @param itemCount itemCount
+     */
+    void record(long elapsedNanos, int itemCount){
+        if(itemCount <= 0) return;
+        double itemNanos = Math.max(1D, (double) elapsedNanos / itemCount);
+        double avg = avgItemNanos;
+        avgItemNanos = avg == 0D ? itemNanos : avg * 0.8D + itemNanos * 0.2D;
+    }
+
+    /**
+     * 下一个批次的大小
+     * @return int
+     */
+    int nextBatchSize(){
+        double avg = avgItemNanos;
+        if(avg == 0D){
+            return INITIAL_BATCH_SIZE;
+        }
+        long size = (long) (TARGET_BATCH_NANOS / avg);
+        return (int) Math.max(1L, Math.min(MAX_BATCH_SIZE, size));
+    }
+}
@@ -1,21 +1,45 @@
 package us.luosl.lslt.concurrent;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 阻塞重复提交的线程池拒绝策略
+ * 队列已满时阻塞提交线程直到队列有空位, 线程池关闭后不再接受任务;
+ * 等待期间的中断不会中止提交, 中断标记会在返回前恢复
  */
 public class BlockingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    private static final long CHECK_INTERVAL_MILLIS = 100L;
+
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        boolean interrupted = false;
         try {
-            BlockingQueue<Runnable> queue = executor.getQueue();
-            queue.put(r);
-        } catch (InterruptedException e) {
-            // todo 是否合理
-            rejectedExecution(r, executor);
+            while(true){
+                if(executor.isShutdown()){
+                    throw new RejectedExecutionException("executor has been shut down");
+                }
+                try {
+                    if(queue.offer(r, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)){
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            // 入队期间线程池被关闭时, 任务不会再被执行
+            if(executor.isShutdown() && queue.remove(r)){
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+        } finally {
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }
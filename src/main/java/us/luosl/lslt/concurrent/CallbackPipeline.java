@@ -0,0 +1,131 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单消费者回调管道
+ * 工作线程把任务结果放入有界的环形缓冲区, 由 job 专属的回调线程按批次取出并调用回调, 回调因此无需线程安全;
+ * 缓冲区满时工作线程等待, 任务迟迟不能结束, 在途许可得不到归还, 压力由此传导到提交端
+ * @param <C>
+ */
+class CallbackPipeline<C> {
+
+    private static final Object NULL = new Object();
+    private static final long MAX_PRODUCER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final JobObserver<C> jobObserver;
+    private final JobBatchCallback<C> batchCallback;
+    private final JobCallback<C> callback;
+    private final MpscRingBuffer<Object> ring;
+    private final int maxBatchSize;
+    private final Thread consumer;
+    private volatile boolean consumerParked;
+
+    private CallbackPipeline(JobObserver<C> jobObserver, JobCallback<C> callback, JobBatchCallback<C> batchCallback,
+                             int bufferSize) {
+        this.jobObserver = jobObserver;
+        this.callback = callback;
+        this.batchCallback = batchCallback;
+        this.ring = new MpscRingBuffer<>(bufferSize);
+        this.maxBatchSize = Math.max(1, ring.capacity() / 4);
+        this.consumer = new Thread(this::consume, String.format("[%s]回调线程", jobObserver.getJobName()));
+        this.consumer.setDaemon(true);
+    }
+
+    static <C> CallbackPipeline<C> of(JobObserver<C> jobObserver, JobCallback<C> callback, int bufferSize){
+        return new CallbackPipeline<>(jobObserver, callback, null, bufferSize);
+    }
+
+    static <C> CallbackPipeline<C> ofBatch(JobObserver<C> jobObserver, JobBatchCallback<C> batchCallback, int bufferSize){
+        return new CallbackPipeline<>(jobObserver, null, batchCallback, bufferSize);
+    }
+
+    void start(){
+        consumer.start();
+        // job 结束后唤醒回调线程使其退出
+        jobObserver.onComplete(() -> LockSupport.unpark(consumer), Runnable::run);
+    }
+
+    /**
+     * 发布一个任务结果, 缓冲区满时阻塞等待; 调用线程必须是该 job 尚未结束的任务
+     * @param result result
+     */
+    void publish(C result){
+        // 结果被回调处理之前 job 不能结束, 当前任务尚未结束, 登记一定成功
+        jobObserver.taskSubmitted();
+        Object e = null == result ? NULL : result;
+        long parkNanos = 1000L;
+        while(!ring.offer(e)){
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(this, parkNanos);
+            parkNanos = Math.min(MAX_PRODUCER_PARK_NANOS, parkNanos << 1);
+        }
+        if(consumerParked){
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume(){
+        List<C> batch = new ArrayList<>(maxBatchSize);
+        while(true){
+            Object e;
+            while(batch.size() < maxBatchSize && null != (e = ring.poll())){
+                batch.add(e == NULL ? null : (C) e);
+            }
+            if(!batch.isEmpty()){
+                invoke(batch);
+                int size = batch.size();
+                batch.clear();
+                for(int i = 0; i < size; i++){
+                    jobObserver.taskDone();
+                }
+                continue;
+            }
+            if(jobObserver.getStatus() == JobStatus.COMPLETE){
+                return;
+            }
+            consumerParked = true;
+            if(ring.isEmpty() && jobObserver.getStatus() != JobStatus.COMPLETE){
+                LockSupport.parkNanos(this, MAX_PRODUCER_PARK_NANOS * 10);
+            }
+            consumerParked = false;
+        }
+    }
+
+    private void invoke(List<C> batch){
+        if(null != batchCallback){
+            try {
+                batchCallback.callback(batch);
+                for(C c: batch){
+                    jobObserver.incrCompleteCount();
+                    jobObserver.fireTaskComplete(c, null);
+                }
+            } catch (Throwable e) {
+                // 批量回调失败时整批计为异常
+                jobObserver.addErrorCount(batch.size());
+                jobObserver.addError(e);
+                for(int i = 0; i < batch.size(); i++){
+                    jobObserver.fireTaskComplete(null, e);
+                }
+            }
+            return;
+        }
+        for(C c: batch){
+            try {
+                if(null != callback){
+                    callback.callback(c);
+                }
+                jobObserver.incrCompleteCount();
+                jobObserver.fireTaskComplete(c, null);
+            } catch (Throwable e) {
+                jobObserver.incrErrorCount();
+                jobObserver.addError(e);
+                jobObserver.fireTaskComplete(null, e);
+            }
+        }
+    }
+}
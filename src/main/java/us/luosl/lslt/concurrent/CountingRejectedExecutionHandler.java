@@ -0,0 +1,83 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计拒绝次数的线程池拒绝策略, 计数后交给被包装的拒绝策略处理
+ * 每个被拒绝的 Runnable 计一次, JobExecutor 批量提交的一个批次是一个 Runnable;
+ * 只在线程池饱和时被调用, 不影响正常提交的开销;
+ * 包装 {@link BlockingRejectedExecutionHandler} 时计数为提交端因队列已满而被阻塞的次数
+ */
+public class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    // 为 true 时队列已满不交给被包装的拒绝策略, 直接抛出 QueueFullException, 见 tryExecute
+    private static final ThreadLocal<Boolean> NON_BLOCKING = new ThreadLocal<>();
+
+    private final RejectedExecutionHandler delegate;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public CountingRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+        if(null == delegate){
+            throw new IllegalArgumentException("delegate must not be null!");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if(null != NON_BLOCKING.get() && !executor.isShutdown()){
+            throw QueueFullException.INSTANCE;
+        }
+        rejectedCount.increment();
+        delegate.rejectedExecution(r, executor);
+    }
+
+    /**
+     * 提交任务, 队列已满时不阻塞也不计为拒绝, 而是返回 false 由调用方稍后再试;
+     * 用于不能阻塞的线程(例如共享调度线程), 线程池关闭时仍然抛出拒绝异常
+     * @param executor 使用本拒绝策略的线程池
+     * @param r 任务
+     * @return 是否已交给线程池
+     */
+    boolean tryExecute(ThreadPoolExecutor executor, Runnable r){
+        NON_BLOCKING.set(Boolean.TRUE);
+        try {
+            executor.execute(r);
+            return true;
+        } catch (QueueFullException e) {
+            return false;
+        } finally {
+            NON_BLOCKING.remove();
+        }
+    }
+
+    public RejectedExecutionHandler getDelegate() {
+        return delegate;
+    }
+
+    public long getRejectedCount(){
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 队列已满, 只在 tryExecute 中抛出并捕获, 不需要堆栈
+     */
+    private static final class QueueFullException extends RejectedExecutionException {
+
+        private static final long serialVersionUID = 1L;
+
+        static final QueueFullException INSTANCE = new QueueFullException();
+
+        private QueueFullException() {
+            super("queue is full");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按 job 加权公平调度的线程池任务队列
+ * 每个 job 的任务进入自己的子队列, 出队时按差额轮询(deficit round robin)在有任务的 job 之间轮转:
+ * 轮到某个 job 时它最多连续出队 weight 个任务, 因此各 job 获得的执行机会与权重成正比,
+ * 小 job 不会排在大 job 的海量任务之后。出队与入队的开销与 job 数量无关。
+ * 不属于任何 job 的任务归入一个权重为 1 的公共子队列
+ */
+class FairJobQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<Object, Flow> flows = new IdentityHashMap<>();
+    // 有任务的子队列, 按轮转顺序排列
+    private final ArrayDeque<Flow> activeFlows = new ArrayDeque<>();
+    private final Object commonKey = new Object();
+    private int count;
+
+    /**
+     * 一个 job 的子队列
+     */
+    private static final class Flow {
+        private final Object key;
+        private final int weight;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private int deficit;
+
+        Flow(Object key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    private Object keyOf(Runnable r){
+        if(r instanceof JobRunnable){
+            return ((JobRunnable) r).getJobObserver();
+        }
+        return commonKey;
+    }
+
+    private int weightOf(Object key){
+        return key instanceof JobObserver ? ((JobObserver<?>) key).getWeight() : 1;
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        if(null == r) throw new NullPointerException();
+        lock.lock();
+        try {
+            Object key = keyOf(r);
+            Flow flow = flows.get(key);
+            if(null == flow){
+                flow = new Flow(key, weightOf(key));
+                flows.put(key, flow);
+                activeFlows.addLast(flow);
+            }
+            flow.tasks.addLast(r);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按差额轮询取出下一个任务, 调用前需持有锁且队列不为空
+     * @return Runnable
+     */
+    private Runnable dequeue(){
+        Flow flow = activeFlows.peekFirst();
+        if(flow.deficit <= 0){
+            flow.deficit = flow.weight;
+        }
+        Runnable r = flow.tasks.pollFirst();
+        flow.deficit--;
+        count--;
+        if(flow.tasks.isEmpty()){
+            activeFlows.pollFirst();
+            flows.remove(flow.key);
+        }else if(flow.deficit <= 0){
+            activeFlows.addLast(activeFlows.pollFirst());
+        }
+        return r;
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while(count == 0){
+                if(nanos <= 0L) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while(count == 0){
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : activeFlows.peekFirst().tasks.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable r) {
+        offer(r);
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+        return offer(r);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if(!(o instanceof Runnable)) return false;
+        lock.lock();
+        try {
+            Flow flow = flows.get(keyOf((Runnable) o));
+            if(null == flow || !flow.tasks.remove(o)) return false;
+            count--;
+            if(flow.tasks.isEmpty()){
+                activeFlows.remove(flow);
+                flows.remove(flow.key);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if(c == this) throw new IllegalArgumentException();
+        lock.lock();
+        try {
+            int n = 0;
+            while(n < maxElements && count > 0){
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 有任务等待的 job 数
+     * @return int
+     */
+    int activeJobCount(){
+        lock.lock();
+        try {
+            return activeFlows.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回当前任务的快照迭代器, 通过迭代器删除会删除队列中对应的任务
+     * @return Iterator<Runnable>
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for(Flow flow: activeFlows){
+                snapshot.addAll(flow.tasks);
+            }
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if(null == last) throw new IllegalStateException();
+                FairJobQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,239 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮, 用于管理大量短期定时任务(例如任务超时)
+ * 到期时间按 tick 取模散列到环形的槽中, 添加与取消都是 O(1), 每个 tick 只处理一个槽;
+ * 新增与取消的定时先放入无锁队列, 由唯一的时间轮线程在 tick 时处理, 槽本身无需加锁。
+ * 定时精度为一个 tick, 到期动作在时间轮线程中执行, 不应执行耗时操作
+ */
+final class HashedTimerWheel {
+
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final long startNanos = System.nanoTime();
+    private long tick;
+
+    HashedTimerWheel(long tickDuration, TimeUnit unit, int wheelSize, String threadName) {
+        if(tickDuration <= 0 || wheelSize <= 0){
+            throw new IllegalArgumentException("tickDuration and wheelSize must be positive!");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[Math.max(1, size)];
+        for(int i = 0; i < wheel.length; i++){
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * 所有 job 共享的时间轮, tick 为 10 毫秒, 512 个槽
+     * @return HashedTimerWheel
+     */
+    static HashedTimerWheel shared(){
+        return Holder.SHARED;
+    }
+
+    private static final class Holder {
+        private static final HashedTimerWheel SHARED =
+                new HashedTimerWheel(10, TimeUnit.MILLISECONDS, 512, "lslt-timer-wheel");
+    }
+
+    /**
+     * 添加一个定时任务, 第一次调用时启动时间轮线程
+     * @param task 到期时在时间轮线程中执行
+     * @param delay delay
+     * @param unit unit
+     * @return 可用于取消的 Timeout
+     */
+    Timeout newTimeout(Runnable task, long delay, TimeUnit unit){
+        if(!started.get() && started.compareAndSet(false, true)){
+            worker.start();
+        }
+        long deadline = System.nanoTime() - startNanos + unit.toNanos(delay);
+        if(delay > 0 && deadline < 0){
+            // 防止溢出
+            deadline = Long.MAX_VALUE;
+        }
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void run(){
+        while(true){
+            waitForNextTick();
+            int idx = (int) (tick & mask);
+            processCancelledTimeouts();
+            transferTimeouts();
+            wheel[idx].expireTimeouts();
+            tick++;
+        }
+    }
+
+    /**
+     * 等待到当前 tick 结束
+     */
+    private void waitForNextTick(){
+        long deadline = tickNanos * (tick + 1);
+        while(true){
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if(sleepNanos <= 0){
+                return;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferTimeouts(){
+        // 每个 tick 最多转移固定数量, 避免大量新增的定时阻塞到期处理
+        for(int i = 0; i < MAX_TRANSFER_PER_TICK; i++){
+            Timeout timeout = pendingTimeouts.poll();
+            if(null == timeout) return;
+            if(timeout.state.get() != Timeout.ST_INIT) continue;
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的定时放入当前槽, 本 tick 即到期
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void processCancelledTimeouts(){
+        Timeout timeout;
+        while(null != (timeout = cancelledTimeouts.poll())){
+            if(null != timeout.bucket){
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * 一个定时任务
+     */
+    static final class Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedTimerWheel timerWheel;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+        // 以下字段只由时间轮线程访问
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(HashedTimerWheel timerWheel, Runnable task, long deadline) {
+            this.timerWheel = timerWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消定时, 已到期或已取消时返回 false
+         * @return boolean
+         */
+        boolean cancel(){
+            if(!state.compareAndSet(ST_INIT, ST_CANCELLED)){
+                return false;
+            }
+            timerWheel.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        boolean isCancelled(){
+            return state.get() == ST_CANCELLED;
+        }
+
+        boolean isExpired(){
+            return state.get() == ST_EXPIRED;
+        }
+
+        private void expire(){
+            if(!state.compareAndSet(ST_INIT, ST_EXPIRED)){
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // 到期动作的异常不能影响时间轮线程
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * 时间轮的一个槽, 双向链表, 只由时间轮线程访问
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout){
+            timeout.bucket = this;
+            if(null == head){
+                head = tail = timeout;
+            }else{
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts(){
+            Timeout timeout = head;
+            while(null != timeout){
+                Timeout next = timeout.next;
+                if(timeout.remainingRounds <= 0){
+                    remove(timeout);
+                    timeout.expire();
+                }else if(timeout.isCancelled()){
+                    remove(timeout);
+                }else{
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout){
+            if(timeout.bucket != this) return;
+            Timeout next = timeout.next;
+            if(null != timeout.prev){
+                timeout.prev.next = next;
+            }
+            if(null != next){
+                next.prev = timeout.prev;
+            }
+            if(timeout == head){
+                head = next;
+            }
+            if(timeout == tail){
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
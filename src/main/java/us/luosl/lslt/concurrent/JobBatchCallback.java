@@ -0,0 +1,13 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.List;
+
+/**
+ * job 批量回调, 在 job 唯一的回调线程中按批次调用, 实现无需考虑线程安全
+ * 传入的 List 在回调返回后会被复用, 不应被保存
+ * @param <C>
+ */
+@FunctionalInterface
+public interface JobBatchCallback<C> {
+    void callback(List<C> batch) throws Exception;
+}
@@ -0,0 +1,14 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * job 已被取消, 正在执行的任务可以通过 {@link JobObserver#checkCancelled()} 抛出该异常提前结束,
+ * 以该异常结束的任务计为取消而不是异常
+ */
+public class JobCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JobCancelledException(String jobName) {
+        super(String.format("job [%s] has been cancelled", jobName));
+    }
+}
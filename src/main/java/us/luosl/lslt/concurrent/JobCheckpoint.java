@@ -0,0 +1,449 @@
+package us.luosl.lslt.concurrent;
+
+import us.luosl.lslt.lang.OffsetLineReader;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 文件 job 的断点, 用于中断(例如进程崩溃)后从上次的位置继续处理
+ * 记录低水位 —— 之前的行全部处理完毕 —— 及其字节偏移量, 以及低水位之后一个窗口内已完成行的位图;
+ * 工作线程结束一行只需原子地设置一个位, 推进水位与写文件由专用的写断点线程按固定间隔批量完成,
+ * 磁盘缓慢时不会拖慢共享调度器上的定时任务; 先写临时文件并刷到磁盘再原子地替换, 断点文件任何时刻都是完整的。
+ * 恢复时直接定位到低水位的偏移量, 并跳过位图中已经完成的行; 一个 JobCheckpoint 只能用于一次提交
+ */
+public class JobCheckpoint {
+
+    private static final int MAGIC = 0x4C534C43;
+    private static final int VERSION = 1;
+    /**
+     * 默认的窗口大小, 提交端最多领先低水位这么多行
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 16;
+    // 窗口必须能容纳提交端缓冲中的一个完整批次, 否则提交端会等待一个永远不会被提交的行
+    private static final int MIN_WINDOW_SIZE = BatchSizer.MAX_BATCH_SIZE * 2;
+
+    private final File checkpointFile;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private long flushIntervalMillis = 1000L;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private JobObserver<?> jobObserver;
+    private long sourceLength;
+    // 已完成行的位图与行首偏移量, 均以行号对窗口取模寻址; 偏移量多一个位置用于存放下一个待提交行的偏移量
+    private AtomicLongArray doneBits;
+    private AtomicLongArray offsets;
+    // 小于 watermark 的行已经全部完成, 只在持有锁时修改
+    private volatile long watermark;
+    // 已经读取的行数
+    private volatile long issued;
+    private volatile boolean eofReached;
+    // 恢复时读取到的断点
+    private long restoredWatermark;
+    private long[] restoredBits = new long[0];
+    private ScheduledFuture<?> flushTask;
+    private boolean finished;
+
+    private JobCheckpoint(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * 使用指定的断点文件, 文件存在时从中恢复, 不存在时从头开始
+     * @param checkpointFile checkpointFile
+     * @return JobCheckpoint
+     */
+    public static JobCheckpoint of(File checkpointFile){
+        assert null != checkpointFile;
+        return new JobCheckpoint(checkpointFile);
+    }
+
+    /**
+     * 设置窗口大小, 提交端最多领先低水位这么多行, 超出时等待; 断点文件的大小与窗口成正比(每行一位)
+     * @param windowSize 不小于批次大小上限的两倍, 按 64 向上取整
+     * @return JobCheckpoint
+     */
+    public JobCheckpoint setWindowSize(int windowSize){
+        checkNotStarted();
+        if(windowSize < MIN_WINDOW_SIZE){
+            throw new IllegalArgumentException(String.format("windowSize must not be less than %d!", MIN_WINDOW_SIZE));
+        }
+        this.windowSize = (windowSize + 63) & ~63;
+        return this;
+    }
+
+    /**
+     * 设置写断点文件的间隔, 进程崩溃时最多重复处理这段时间内完成的行
+     * @param interval interval
+     * @param unit unit
+     * @return JobCheckpoint
+     */
+    public JobCheckpoint setFlushInterval(long interval, TimeUnit unit){
+        checkNotStarted();
+        if(interval <= 0){
+            throw new IllegalArgumentException("interval must be positive!");
+        }
+        this.flushIntervalMillis = Math.max(1L, unit.toMillis(interval));
+        return this;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * 当前的低水位, 小于它的行已经全部处理完毕
+     * @return long
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    private void checkNotStarted(){
+        if(started.get()){
+            throw new RuntimeException("You cannot change the checkpoint after submit!");
+        }
+    }
+
+    /**
+     * 开始跟踪对 source 的处理, 存在断点文件时从中恢复, 之后按间隔写断点
+     * @param source 数据文件
+     * @param jobObserver 写断点失败的异常记录到 job 中
+     * @throws IOException 断点文件读取失败或与数据文件不匹配
+     */
+    void start(File source, JobObserver<?> jobObserver) throws IOException {
+        if(!started.compareAndSet(false, true)){
+            throw new RuntimeException("A checkpoint can only be used once!");
+        }
+        this.jobObserver = jobObserver;
+        this.sourceLength = source.length();
+        this.doneBits = new AtomicLongArray(windowSize >>> 6);
+        this.offsets = new AtomicLongArray(windowSize + 1);
+        long startOffset = 0L;
+        if(checkpointFile.exists()){
+            startOffset = restore();
+        }
+        watermark = restoredWatermark;
+        issued = restoredWatermark;
+        offsets.set(offsetSlot(restoredWatermark), startOffset);
+        flushTask = FlushScheduler.INSTANCE.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long restore() throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))){
+            if(in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new IOException(String.format("%s is not a checkpoint file", checkpointFile));
+            }
+            long length = in.readLong();
+            if(length != sourceLength){
+                throw new IOException(String.format("the source file has changed since the checkpoint %s was written",
+                        checkpointFile));
+            }
+            restoredWatermark = in.readLong();
+            long offset = in.readLong();
+            long[] bits = new long[in.readInt()];
+            for(int i = 0; i < bits.length; i++){
+                bits[i] = in.readLong();
+            }
+            restoredBits = bits;
+            return offset;
+        }
+    }
+
+    /**
+     * 恢复后开始读取的行号
+     * @return long
+     */
+    long getStartIndex(){
+        return restoredWatermark;
+    }
+
+    /**
+     * 恢复后开始读取的字节偏移量
+     * @return long
+     */
+    long getStartOffset(){
+        return offsets.get(offsetSlot(restoredWatermark));
+    }
+
+    private int offsetSlot(long index){
+        return (int) (index % (windowSize + 1));
+    }
+
+    private boolean isDone(long index){
+        int bit = (int) (index % windowSize);
+        return (doneBits.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    private boolean isRestoredDone(long index){
+        long rel = index - restoredWatermark;
+        if(rel < 0 || rel >= (long) restoredBits.length << 6){
+            return false;
+        }
+        return (restoredBits[(int) (rel >>> 6)] & (1L << rel)) != 0;
+    }
+
+    /**
+     * 标记一行已经处理完毕, 在工作线程中调用
+     * @param index 行号
+     */
+    void markDone(long index){
+        int bit = (int) (index % windowSize);
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = doneBits.get(word);
+        } while (!doneBits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * 推进低水位并清除低水位之前的位
+     */
+    private synchronized void advance(){
+        long w = watermark;
+        long limit = issued;
+        while(w < limit && isDone(w)){
+            int bit = (int) (w % windowSize);
+            int word = bit >>> 6;
+            long mask = ~(1L << bit);
+            long current;
+            do {
+                current = doneBits.get(word);
+            } while (!doneBits.compareAndSet(word, current, current & mask));
+            w++;
+        }
+        watermark = w;
+    }
+
+    /**
+     * 等待 index 进入窗口
+     * @return job 已被取消时返回 false
+     */
+    private boolean awaitWindow(long index){
+        long parkNanos = 1000L;
+        while(index >= watermark + windowSize){
+            advance();
+            if(index < watermark + windowSize){
+                return true;
+            }
+            if(jobObserver.isCancelled()){
+                return false;
+            }
+            LockSupport.parkNanos(this, parkNanos);
+            parkNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(1), parkNanos << 1);
+        }
+        return true;
+    }
+
+    /**
+     * 写断点文件, 先写临时文件再替换
+     * @throws IOException IOException
+     */
+    synchronized void flush() throws IOException {
+        if(finished){
+            return;
+        }
+        write();
+    }
+
+    private void write() throws IOException {
+        advance();
+        long w = watermark;
+        long pending = issued - w;
+        long[] bits = new long[(int) ((pending + 63) >>> 6)];
+        for(long rel = 0; rel < pending; rel++){
+            if(isDone(w + rel)){
+                bits[(int) (rel >>> 6)] |= 1L << rel;
+            }
+        }
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        try(FileOutputStream fos = new FileOutputStream(temp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(w);
+            out.writeLong(offsets.get(offsetSlot(w)));
+            out.writeInt(bits.length);
+            for(long word: bits){
+                out.writeLong(word);
+            }
+            // 替换前内容必须已经落盘, 否则崩溃后替换过的断点文件可能为空或不完整
+            out.flush();
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), checkpointFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(checkpointFile.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * 将目录项的变化(替换)刷到磁盘, 不支持打开目录的平台上忽略
+     * @param dir dir
+     */
+    private static void syncDirectory(File dir){
+        if(null == dir){
+            return;
+        }
+        try(FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)){
+            channel.force(true);
+        } catch (IOException e) {
+            // 部分平台(如 Windows)不能打开目录, 替换本身已经完成
+        }
+    }
+
+    private void flushQuietly(){
+        try {
+            flush();
+        } catch (IOException e) {
+            jobObserver.addError(e);
+        }
+    }
+
+    /**
+     * job 结束时调用: 文件全部处理完毕时删除断点文件, 否则写入最终的断点
+     * @param cancelled job 是否被取消
+     */
+    synchronized void finish(boolean cancelled){
+        finished = true;
+        flushTask.cancel(false);
+        advance();
+        try {
+            if(!cancelled && eofReached && watermark == issued){
+                Files.deleteIfExists(checkpointFile.toPath());
+            }else{
+                write();
+            }
+        } catch (IOException e) {
+            jobObserver.addError(e);
+        }
+    }
+
+    /**
+     * 包装处理函数: 行处理完毕(成功或不再重试的失败)后标记完成, 被取消的行留待恢复后处理
+     * @param fn fn
+     * @param <C> <C>
+     * @return JobFunction<Line, C>
+     */
+    <C> JobFunction<Line, C> track(JobFunction<String, ? extends C> fn){
+        return line -> {
+            line.attempts++;
+            boolean done = true;
+            try {
+                return fn.apply(line.text);
+            } catch (JobCancelledException e) {
+                done = false;
+                throw e;
+            } catch (Throwable e) {
+                RetryPolicy retryPolicy = jobObserver.getRetryPolicy();
+                done = null == retryPolicy || jobObserver.isCancelled() || !retryPolicy.shouldRetry(e, line.attempts);
+                throw e;
+            } finally {
+                if(done){
+                    markDone(line.index);
+                }
+            }
+        };
+    }
+
+    /**
+     * 从恢复位置开始逐行读取, 跳过已经完成的行, 提交端领先低水位一个窗口时等待
+     * @param reader 从 {@link #getStartOffset()} 开始读取的 reader
+     * @return Iterator<Line>
+     */
+    Iterator<Line> lines(OffsetLineReader reader){
+        return new Iterator<Line>() {
+            private long nextIndex = getStartIndex();
+            private Line next;
+
+            @Override
+            public boolean hasNext() {
+                while(null == next){
+                    if(!awaitWindow(nextIndex)){
+                        return false;
+                    }
+                    String text;
+                    try {
+                        text = reader.readLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if(null == text){
+                        eofReached = true;
+                        return false;
+                    }
+                    long index = nextIndex++;
+                    offsets.set(offsetSlot(index + 1), reader.getOffset());
+                    issued = index + 1;
+                    if(isRestoredDone(index)){
+                        markDone(index);
+                    }else{
+                        next = new Line(index, text);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Line next() {
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                Line line = next;
+                next = null;
+                return line;
+            }
+        };
+    }
+
+    /**
+     * 所有断点共享的写文件线程, 只在第一次使用断点时创建
+     */
+    private static final class FlushScheduler {
+        private static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create(){
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "lslt-checkpoint-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    /**
+     * 文件中的一行
+     */
+    static final class Line {
+        private final long index;
+        private final String text;
+        // 已经尝试处理的次数, 重试时沿用同一个对象
+        private int attempts;
+
+        Line(long index, String text) {
+            this.index = index;
+            this.text = text;
+        }
+    }
+}
@@ -1,23 +1,83 @@
 package us.luosl.lslt.concurrent;
 
-import java.util.LinkedList;
+import us.luosl.lslt.lang.FileUtils;
+import us.luosl.lslt.lang.OffsetLineReader;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 import static us.luosl.lslt.concurrent.JobStatus.*;
 
 /**
  * 基于 job 的线程池
+ * 记录尚未结束的 job, 线程池级与 job 级的监控指标可以通过 {@link #enableJmx()} 暴露为 MBean,
+ * 或通过 {@link PrometheusExporter} 输出为 Prometheus 文本格式
  */
-public class JobExecutor {
+public class JobExecutor implements JobExecutorMXBean {
+
+    // 线程池队列已满时重试任务的再次调度间隔
+    private static final long RETRY_REQUEUE_DELAY_MILLIS = 10L;
+
+    // 每个 job 默认的在途任务数为 线程数 * 该值: 足以让线程不断档, 又只占共享队列的一小部分,
+    // 多个 job 同时提交时各自在提交端被限流, 不会由一个 job 填满队列
+    private static final int DEFAULT_CREDITS_PER_THREAD = 2;
+
+    private static final AtomicLong EXECUTOR_NUMBER = new AtomicLong();
 
     private ExecutorService jobExecutor;
 
     private AtomicLong number = new AtomicLong();
 
+    // 新建 job 默认的最大在途任务数, 0 表示不限制
+    private int defaultMaxInFlight;
+
+    private volatile String name = String.format("executor-%d", EXECUTOR_NUMBER.getAndIncrement());
+
+    // 尚未结束的 job, 只在 job 开始与结束时修改
+    private final Set<JobObserver<?>> activeJobs = ConcurrentHashMap.newKeySet();
+
+    // 拒绝次数以交给线程池的 Runnable 为单位, 一个批次无论包含多少元素都只计一次;
+    // ThreadPoolExecutor 的拒绝由拒绝策略计数, 其他线程池由提交端捕获的拒绝异常计数
+    private final CountingRejectedExecutionHandler rejectionCounter;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private volatile JobExecutorJmx jmx;
+
+    private volatile AdaptivePoolSizer adaptivePoolSizer;
+
     private JobExecutor(ExecutorService executorService){
         this.jobExecutor = executorService;
+        if(executorService instanceof ThreadPoolExecutor){
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executorService;
+            RejectedExecutionHandler handler = pool.getRejectedExecutionHandler();
+            if(handler instanceof CountingRejectedExecutionHandler){
+                rejectionCounter = (CountingRejectedExecutionHandler) handler;
+            }else{
+                rejectionCounter = new CountingRejectedExecutionHandler(handler);
+                pool.setRejectedExecutionHandler(rejectionCounter);
+            }
+        }else{
+            rejectionCounter = null;
+        }
     }
 
     /**
@@ -26,7 +86,7 @@ public class JobExecutor {
      * @param <C> <C>
      */
     public <C> void endSubmit(JobObserver<C> jobObserver) {
-        jobObserver.setStatus(AWAIT_COMPLETE);
+        jobObserver.endSubmit();
     }
 
     /**
@@ -46,18 +106,35 @@ public class JobExecutor {
      */
     public <C> void awaitComplete(JobObserver<C> jobObserver, Consumer<Throwable> exceptionHandel) {
         endSubmit(jobObserver);
-        LinkedList<Future<C>> fs = jobObserver.getFutures();
-        for(Future<C> f: fs){
+        boolean interrupted = false;
+        while(true){
             try {
-                f.get();
-            } catch (Exception e) {
-                exceptionHandel.accept(e);
+                jobObserver.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
         }
-
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+        for(Throwable e: jobObserver.drainErrors()){
+            exceptionHandel.accept(e);
+        }
     }
 
 
+    /**
+     * 结束提交并返回 job 结束的 CompletionStage, 不阻塞当前线程
+     * @param jobObserver jobObserver
+     * @param <C> <C>
+     * @return CompletionStage<JobSummary>
+     */
+    public <C> CompletionStage<JobSummary> awaitCompleteAsync(JobObserver<C> jobObserver) {
+        endSubmit(jobObserver);
+        return jobObserver.getCompletionStage();
+    }
+
     /**
      * 根据 jobObserver 提交一个 Callable 任务
      * @param callable callable
@@ -65,31 +142,440 @@ public class JobExecutor {
      * @param <C> <C>
      */
     public <C> void submitWithJobObserver(Callable<C> callable, JobObserver<C> jobObserver){
-        if(jobObserver.getStatus().getValue() > RUNNING.getValue()){
+        checkSubmittable(jobObserver);
+        executeJobTask(JobTask.of(callable, jobObserver), jobObserver, acquireCredit(jobObserver));
+    }
+
+    /**
+     * 根据 jobObserver 提交一个带执行期限的 Callable 任务, 期限覆盖 job 的 {@link JobObserver#setTaskTimeout} 设置,
+     * 超过期限的任务会被中断并计为超时
+     * @param callable callable
+     * @param jobObserver jobObserver
+     * @param timeout 执行期限
+     * @param unit unit
+     * @param <C> <C>
+     */
+    public <C> void submitWithTimeout(Callable<C> callable, JobObserver<C> jobObserver, long timeout, TimeUnit unit){
+        checkSubmittable(jobObserver);
+        JobTask<Callable<C>, C> task = JobTask.of(callable, jobObserver);
+        task.setTimeoutNanos(unit.toNanos(timeout));
+        executeJobTask(task, jobObserver, acquireCredit(jobObserver));
+    }
+
+    /**
+     * 根据 jobObserver 提交一个带执行期限的 runnable 任务
+     * @param runnable runnable
+     * @param jobObserver jobObserver
+     * @param timeout 执行期限
+     * @param unit unit
+     */
+    public void submitWithTimeout(Runnable runnable, JobObserver<?> jobObserver, long timeout, TimeUnit unit){
+        submitWithTimeout(() -> {
+            runnable.run();
+            return null;
+        }, jobObserver, timeout, unit);
+    }
+
+    /**
+     * 根据 jobObserver 提交一个 Callable 任务, 等待在途许可时响应中断
+     * @param callable callable
+     * @param jobObserver jobObserver
+     * @param <C> <C>
+     * @throws InterruptedException 等待许可时被中断
+     */
+    public <C> void submitWithJobObserverInterruptibly(Callable<C> callable, JobObserver<C> jobObserver)
+            throws InterruptedException {
+        checkSubmittable(jobObserver);
+        boolean creditHeld = !isWorkerThread();
+        if(creditHeld){
+            jobObserver.acquireCreditInterruptibly();
+        }
+        executeJobTask(JobTask.of(callable, jobObserver), jobObserver, creditHeld);
+    }
+
+    public void submitWithJobObserverInterruptibly(Runnable runnable, JobObserver<?> jobObserver)
+            throws InterruptedException {
+        submitWithJobObserverInterruptibly(() -> {
+            runnable.run();
+            return null;
+        }, jobObserver);
+    }
+
+    /**
+     * 根据 jobObserver 提交一个 Callable 任务, 在指定时间内无法获得在途许可时放弃提交
+     * @param callable callable
+     * @param jobObserver jobObserver
+     * @param timeout timeout
+     * @param unit unit
+     * @param <C> <C>
+     * @return 是否提交成功
+     * @throws InterruptedException 等待许可时被中断
+     */
+    public <C> boolean trySubmitWithJobObserver(Callable<C> callable, JobObserver<C> jobObserver,
+                                                long timeout, TimeUnit unit) throws InterruptedException {
+        checkSubmittable(jobObserver);
+        boolean creditHeld = !isWorkerThread();
+        if(creditHeld && !jobObserver.tryAcquireCredit(timeout, unit)){
+            return false;
+        }
+        executeJobTask(JobTask.of(callable, jobObserver), jobObserver, creditHeld);
+        return true;
+    }
+
+    public boolean trySubmitWithJobObserver(Runnable runnable, JobObserver<?> jobObserver,
+                                            long timeout, TimeUnit unit) throws InterruptedException {
+        return trySubmitWithJobObserver(() -> {
+            runnable.run();
+            return null;
+        }, jobObserver, timeout, unit);
+    }
+
+    /**
+     * 根据 jobObserver 批量提交任务, 每 batchSize 个元素打包为一个任务执行, 计数与回调仍按元素进行
+     * @param items items
+     * @param fn 对每个元素的处理函数
+     * @param jobObserver jobObserver
+     * @param batchSize 批次大小, 小于等于 0 时根据实测的单个元素耗时自适应调整
+     * @param <I> <I>
+     * @param <C> <C>
+     */
+    public <I, C> void submitAll(Spliterator<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver, int batchSize){
+        checkSubmittable(jobObserver);
+        BatchSizer batchSizer = batchSize > 0 ? null : new BatchSizer();
+        ItemBuffer<I> buffer = new ItemBuffer<>();
+        while(true){
+            buffer.reset(null == batchSizer ? batchSize : batchSizer.nextBatchSize());
+            while(!buffer.isFull() && items.tryAdvance(buffer)){
+                // 填充当前批次
+            }
+            if(buffer.size() == 0 || jobObserver.isCancelled()) break;
+            executeJobTask(JobTask.ofBatch(buffer.items(), buffer.size(), fn, jobObserver, batchSizer),
+                    jobObserver, acquireCredit(jobObserver));
+            if(!buffer.isFull()) break;
+        }
+    }
+
+    /**
+     * 根据 jobObserver 批量提交任务, 批次大小自适应调整
+     * @param items items
+     * @param fn 对每个元素的处理函数
+     * @param jobObserver jobObserver
+     * @param <I> <I>
+     * @param <C> <C>
+     */
+    public <I, C> void submitAll(Spliterator<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver){
+        submitAll(items, fn, jobObserver, 0);
+    }
+
+    public <I, C> void submitAll(Iterable<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver, int batchSize){
+        submitAll(items.spliterator(), fn, jobObserver, batchSize);
+    }
+
+    public <I, C> void submitAll(Iterable<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver){
+        submitAll(items, fn, jobObserver, 0);
+    }
+
+    public <I, C> void submitAll(Iterator<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver, int batchSize){
+        submitAll(Spliterators.spliteratorUnknownSize(items, Spliterator.ORDERED), fn, jobObserver, batchSize);
+    }
+
+    public <I, C> void submitAll(Iterator<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver){
+        submitAll(items, fn, jobObserver, 0);
+    }
+
+    public <I, C> void submitAll(Stream<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver, int batchSize){
+        submitAll(items.sequential().spliterator(), fn, jobObserver, batchSize);
+    }
+
+    public <I, C> void submitAll(Stream<I> items, JobFunction<? super I, ? extends C> fn,
+                                 JobObserver<C> jobObserver){
+        submitAll(items, fn, jobObserver, 0);
+    }
+
+    /**
+     * 可恢复地提交文件中的每一行
+     * 处理进度按间隔异步写入断点文件; 中断后使用同一个断点文件再次提交时, 直接从断点处继续读取并跳过已经完成的行,
+     * 文件全部处理完毕后删除断点文件。处理失败且不再重试的行同样视为已完成, 被取消的行在恢复后重新处理
+     * @param file 数据文件, 恢复时必须与写断点时相同
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @param fn 对每一行的处理函数
+     * @param jobObserver jobObserver, 不能设置任务执行期限
+     * @param checkpoint 断点
+     * @param <C> <C>
+     * @throws IOException 文件读取失败或断点文件与数据文件不匹配
+     */
+    public <C> void submitFileLines(File file, String charset, JobFunction<String, ? extends C> fn,
+                                    JobObserver<C> jobObserver, JobCheckpoint checkpoint) throws IOException {
+        checkSubmittable(jobObserver);
+        if(jobObserver.getTaskTimeoutNanos() > 0){
+            // 超时的行可能永远不会结束, 低水位将无法推进
+            throw new RuntimeException("resumable file jobs do not support task timeouts!");
+        }
+        checkpoint.start(file, jobObserver);
+        jobObserver.beforeComplete(() -> checkpoint.finish(jobObserver.isCancelled()));
+        try(OffsetLineReader reader = FileUtils.openOffsetLineReader(file, charset, checkpoint.getStartOffset())){
+            submitAll(checkpoint.lines(reader), checkpoint.track(fn), jobObserver);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 提交文件中的每一行, 文件在独立的读取线程中按批预读, 读取与提交互不阻塞
+     * 预读的批次数有上限, 提交端被在途许可阻塞时读取线程随之停下, 不会把整个文件读入内存;
+     * 提交过程中按字节更新 job 的输入进度, {@link JobStatistics} 据此估算总行数与剩余时间
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @param fn 对每一行的处理函数
+     * @param jobObserver jobObserver
+     * @param readAheadBatches 最多预读的批次数, 每批 1024 行
+     * @param <C> <C>
+     * @throws IOException 文件读取失败, 之前读取的行已经提交
+     */
+    public <C> void submitFile(File file, String charset, JobFunction<String, ? extends C> fn,
+                               JobObserver<C> jobObserver, int readAheadBatches) throws IOException {
+        checkSubmittable(jobObserver);
+        try(ReadAheadLineSpliterator lines = ReadAheadLineSpliterator.open(file, charset, jobObserver, readAheadBatches)){
+            submitAll(lines, fn, jobObserver);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public <C> void submitFile(File file, String charset, JobFunction<String, ? extends C> fn,
+                               JobObserver<C> jobObserver) throws IOException {
+        submitFile(file, charset, fn, jobObserver, ReadAheadLineSpliterator.DEFAULT_READ_AHEAD_BATCHES);
+    }
+
+    /**
+     * 处理文件中的每一行并等待全部完成, 即 {@link #submitFile(File, String, JobFunction, JobObserver)} 之后结束提交并等待
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @param fn 对每一行的处理函数
+     * @param jobObserver jobObserver
+     * @param <C> <C>
+     * @return JobSummary 任务的异常包含在其中
+     * @throws IOException 文件读取失败, 已经提交的行执行完毕后抛出
+     */
+    public <C> JobSummary processFile(File file, String charset, JobFunction<String, ? extends C> fn,
+                                      JobObserver<C> jobObserver) throws IOException {
+        try{
+            submitFile(file, charset, fn, jobObserver);
+        }finally {
+            awaitComplete(jobObserver, e -> { });
+        }
+        return jobObserver.getCompletionStage().toCompletableFuture().join();
+    }
+
+    public JobSummary processFile(File file, String charset, JobFunction<String, ?> fn) throws IOException {
+        return processFile(file, charset, fn, startJob(new JobObserver<>(file.getName()), null));
+    }
+
+    /**
+     * 提交一批可以自我拆分的任务
+     * 在 {@link #createWorkStealing(int)} 创建的 JobExecutor 中, 任务执行时会把元素数超过 threshold 的部分拆分为子任务,
+     * 子任务放入当前工作线程的队列并可被其他工作线程窃取, 所有子任务计入同一个 jobObserver;
+     * 其他类型的 JobExecutor 中等价于以 threshold 为批次大小的 {@link #submitAll(Spliterator, JobFunction, JobObserver, int)}
+     * @param items items
+     * @param fn 对每个元素的处理函数
+     * @param jobObserver jobObserver
+     * @param threshold 不再拆分的元素数
+     * @param <I> <I>
+     * @param <C> <C>
+     */
+    public <I, C> void submitSplittable(Spliterator<I> items, JobFunction<? super I, ? extends C> fn,
+                                        JobObserver<C> jobObserver, long threshold){
+        if(!(jobExecutor instanceof ForkJoinPool)){
+            submitAll(items, fn, jobObserver, (int) Math.min(Integer.MAX_VALUE, Math.max(1L, threshold)));
+            return;
+        }
+        checkSubmittable(jobObserver);
+        boolean creditHeld = acquireCredit(jobObserver);
+        if(!jobObserver.taskSubmitted()){
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            throw new RuntimeException("this status can not submit task！");
+        }
+        long exactSize = items.getExactSizeIfKnown();
+        if(exactSize >= 0){
+            jobObserver.addSubmitCount(exactSize);
+        }
+        try {
+            dispatch(new SplittingJobTask<>(items, fn, jobObserver, threshold, this::dispatch,
+                    creditHeld, exactSize < 0));
+        } catch (RejectedExecutionException e) {
+            if(exactSize > 0){
+                jobObserver.addStartedCount(exactSize);
+                jobObserver.addErrorCount(exactSize);
+            }
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            jobObserver.taskDone();
+            throw e;
+        }
+    }
+
+    /**
+     * 提交一批可以自我拆分的任务, 拆分阈值按 并行度 * 8 个子任务估算
+     * @param items items
+     * @param fn 对每个元素的处理函数
+     * @param jobObserver jobObserver
+     * @param <I> <I>
+     * @param <C> <C>
+     */
+    public <I, C> void submitSplittable(Spliterator<I> items, JobFunction<? super I, ? extends C> fn,
+                                        JobObserver<C> jobObserver){
+        int parallelism = jobExecutor instanceof ForkJoinPool ?
+                ((ForkJoinPool) jobExecutor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        long size = items.estimateSize();
+        long threshold = size == Long.MAX_VALUE ? 1024L : Math.max(1L, size / (parallelism * 8L));
+        submitSplittable(items, fn, jobObserver, threshold);
+    }
+
+    /**
+     * 检查 job 是否可以提交任务, 结束提交后只允许尚未结束的任务继续提交子任务
+     * @param jobObserver jobObserver
+     */
+    private void checkSubmittable(JobObserver<?> jobObserver){
+        if(jobObserver.getStatus().getValue() > RUNNING.getValue() && !jobObserver.isSubmittable()){
             // todo 定义异常
             throw new RuntimeException("this status can not submit task！");
         }
-        Future<C> future = jobExecutor.submit(() -> {
-            jobObserver.decrAwaitingCount();
-            jobObserver.incrRunningCount();
-            C c;
-            try {
-                c = callable.call();
-                // 执行回调函数
-                if(null != jobObserver.getJobCallback()){
-                    jobObserver.getJobCallback().callback(c);
+    }
+
+    /**
+     * 获取 job 的在途许可
+     * 在本线程池的工作线程中提交(即任务提交子任务)时不获取许可, 避免工作线程互相等待许可造成死锁
+     * @param jobObserver jobObserver
+     * @return 是否获取了许可
+     */
+    private boolean acquireCredit(JobObserver<?> jobObserver){
+        if(isWorkerThread()){
+            return false;
+        }
+        jobObserver.acquireCredit();
+        return true;
+    }
+
+    /**
+     * 当前线程是否为本 JobExecutor 的 work-stealing 工作线程
+     * @return boolean
+     */
+    private boolean isWorkerThread(){
+        return jobExecutor instanceof ForkJoinPool && ForkJoinTask.getPool() == jobExecutor;
+    }
+
+    /**
+     * 执行一个任务, 在 work-stealing 工作线程中提交的任务放入当前线程自己的队列
+     * @param task task
+     */
+    private void dispatch(Runnable task){
+        if(isWorkerThread()){
+            ForkJoinTask.adapt(task).fork();
+        }else{
+            jobExecutor.execute(task);
+        }
+    }
+
+    /**
+     * 重新执行一个等待重试的任务, 在共享调度线程中调用, 因此不能阻塞:
+     * 与普通提交一样需要 job 的在途许可, 没有空闲许可或线程池队列已满时稍后再试, 被线程池拒绝时该任务计为异常
+     * @param task 已经登记过的重试任务
+     */
+    void executeRetry(JobTask<?, ?> task){
+        JobObserver<?> jobObserver = task.getJobObserver();
+        boolean shutdown = jobExecutor.isShutdown();
+        boolean creditHeld = !shutdown && jobObserver.tryAcquireCredit();
+        if(!shutdown && !creditHeld){
+            rescheduleRetry(task);
+            return;
+        }
+        task.setCreditHeld(creditHeld);
+        task.markSubmitted();
+        try {
+            if(!tryExecute(task)){
+                if(creditHeld){
+                    jobObserver.releaseCredit();
                 }
-                jobObserver.incrCompleteCount();
-            }catch (Exception e){
-                jobObserver.incrErrorCount();
-                throw e;
+                rescheduleRetry(task);
             }
-            jobObserver.decrRunningCount();
-            return c;
-        });
-        jobObserver.incrSubmitCount();
-        jobObserver.incrAwaitingCount();
-        jobObserver.getFutures().add(future);
+        } catch (RejectedExecutionException e) {
+            recordRejection();
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            jobObserver.incrStartedCount();
+            jobObserver.incrErrorCount();
+            jobObserver.addError(e);
+            jobObserver.taskDone();
+        }
+    }
+
+    private void rescheduleRetry(JobTask<?, ?> task){
+        SharedScheduler.get().schedule(() -> executeRetry(task), RETRY_REQUEUE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 不阻塞地提交任务, ThreadPoolExecutor 的队列已满时返回 false, 不会进入阻塞的拒绝策略
+     * @param task task
+     * @return 是否已交给线程池
+     */
+    private boolean tryExecute(Runnable task){
+        if(null != rejectionCounter){
+            return rejectionCounter.tryExecute((ThreadPoolExecutor) jobExecutor, task);
+        }
+        jobExecutor.execute(task);
+        return true;
+    }
+
+    /**
+     * 登记并执行一个 JobTask, 被线程池拒绝时该任务中的元素计为异常
+     * @param task task
+     * @param jobObserver jobObserver
+     * @param creditHeld 调用方是否已经获得在途许可
+     */
+    private void executeJobTask(JobTask<?, ?> task, JobObserver<?> jobObserver, boolean creditHeld){
+        int size = task.size();
+        task.setCreditHeld(creditHeld);
+        task.markSubmitted();
+        if(!jobObserver.taskSubmitted()){
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            throw new RuntimeException("this status can not submit task！");
+        }
+        jobObserver.addSubmitCount(size);
+        if(jobObserver.isCancelled()){
+            // 已取消的 job 不再执行新任务
+            jobObserver.addStartedCount(size);
+            jobObserver.addCancelledCount(size);
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            jobObserver.taskDone();
+            return;
+        }
+        try {
+            dispatch(task);
+        } catch (RejectedExecutionException e) {
+            recordRejection();
+            jobObserver.addStartedCount(size);
+            jobObserver.addErrorCount(size);
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            jobObserver.taskDone();
+            throw e;
+        }
     }
 
     /**
@@ -153,25 +639,473 @@ public class JobExecutor {
     public <T> JobObserver<T> beginJobWithCallback(JobCallback<T> callback, String jobName){
         JobObserver<T> observer = new JobObserver<>(jobName);
         observer.setJobCallback(callback);
+        return startJob(observer, null);
+    }
+
+    /**
+     * 开始一个归约 job, 任务结果由 collector 在每个执行线程中局部累加, job 结束后合并一次得到 job 的结果
+     * collector 的累加容器无需线程安全, 但必须提供可用的 combiner
+     * @param collector collector
+     * @param jobName jobName
+     * @param <T> 任务结果类型
+     * @param <A> 累加容器类型
+     * @param <R> 归约结果类型
+     * @return ReduceJobObserver<T, R>
+     */
+    public <T, A, R> ReduceJobObserver<T, R> beginReduceJob(Collector<? super T, A, R> collector, String jobName){
+        return startJob(new ReduceJobObserver<>(jobName, collector), null);
+    }
+
+    public <T, A, R> ReduceJobObserver<T, R> beginReduceJob(Collector<? super T, A, R> collector){
+        return beginReduceJob(collector, generateJobName());
+    }
+
+    /**
+     * 以 supplier/accumulator/combiner 开始一个归约 job
+     * @param supplier 创建局部结果
+     * @param accumulator 将任务结果累加到局部结果
+     * @param combiner 合并两个局部结果
+     * @param jobName jobName
+     * @param <T> 任务结果类型
+     * @param <R> 归约结果类型
+     * @return ReduceJobObserver<T, R>
+     */
+    public <T, R> ReduceJobObserver<T, R> beginReduceJob(Supplier<R> supplier, BiConsumer<R, ? super T> accumulator,
+                                                         BinaryOperator<R> combiner, String jobName){
+        return beginReduceJob(Collector.of(supplier, accumulator, combiner), jobName);
+    }
+
+    /**
+     * 阻塞等待归约 job 的所有任务完成并返回归约结果, 出现异常时抛出 RuntimeException
+     * @param jobObserver jobObserver
+     * @param <T> <T>
+     * @param <R> <R>
+     * @return R
+     */
+    public <T, R> R awaitResult(ReduceJobObserver<T, R> jobObserver){
+        return awaitResult(jobObserver, (Throwable e) -> { throw new RuntimeException(e); });
+    }
+
+    /**
+     * 阻塞等待归约 job 的所有任务完成并返回归约结果, 执行失败的任务不参与归约
+     * @param jobObserver jobObserver
+     * @param exceptionHandel exceptionHandel
+     * @param <T> <T>
+     * @param <R> <R>
+     * @return R
+     */
+    public <T, R> R awaitResult(ReduceJobObserver<T, R> jobObserver, Consumer<Throwable> exceptionHandel){
+        awaitComplete(jobObserver, exceptionHandel);
+        return jobObserver.getResultStage().toCompletableFuture().join();
+    }
+
+    /**
+     * 开始一个 job, 回调在 job 专属的单个回调线程中执行, 因此回调无需线程安全
+     * 任务结果经由容量为 bufferSize 的环形缓冲区交给回调线程, 缓冲区满时工作线程等待, 并最终阻塞提交端
+     * @param callback callback
+     * @param jobName jobName
+     * @param bufferSize 缓冲区容量
+     * @param <T> <T>
+     * @return JobObserver<T>
+     */
+    public <T> JobObserver<T> beginJobWithPipelinedCallback(JobCallback<T> callback, String jobName, int bufferSize){
+        JobObserver<T> observer = new JobObserver<>(jobName);
+        CallbackPipeline<T> pipeline = CallbackPipeline.of(observer, callback, bufferSize);
+        observer.setCallbackPipeline(pipeline);
+        return startJob(observer, pipeline);
+    }
+
+    /**
+     * 开始一个 job, 任务结果在 job 专属的单个回调线程中按批次交给回调, 便于批量写出
+     * @param callback callback
+     * @param jobName jobName
+     * @param bufferSize 缓冲区容量, 每批最多为容量的四分之一
+     * @param <T> <T>
+     * @return JobObserver<T>
+     */
+    public <T> JobObserver<T> beginJobWithBatchCallback(JobBatchCallback<T> callback, String jobName, int bufferSize){
+        JobObserver<T> observer = new JobObserver<>(jobName);
+        CallbackPipeline<T> pipeline = CallbackPipeline.ofBatch(observer, callback, bufferSize);
+        observer.setCallbackPipeline(pipeline);
+        return startJob(observer, pipeline);
+    }
+
+    private <T, O extends JobObserver<T>> O startJob(O observer, CallbackPipeline<T> pipeline){
+        observer.setMaxInFlight(defaultMaxInFlight);
+        observer.setJobExecutor(this);
         observer.setStatus(JobStatus.RUNNING);
         observer.setStartTime(System.currentTimeMillis());
+        if(null != pipeline){
+            pipeline.start();
+        }
+        // 先挂上结束处理再公开 job, job 不会在结束后仍留在活跃 job 中;
+        // 公开之后再读取 jmx, 与 enableJmx 并发时 job 至少被其中一方注册, JMX 注册失败只记录日志
+        observer.getCompletionStage().whenComplete((summary, e) -> jobFinished(observer));
+        activeJobs.add(observer);
+        JobExecutorJmx currentJmx = jmx;
+        if(null != currentJmx){
+            currentJmx.register(observer);
+        }
         return observer;
     }
 
+    /**
+     * job 结束时从活跃 job 中移除, 在最后一个结束任务的线程中执行
+     * @param observer observer
+     */
+    private void jobFinished(JobObserver<?> observer){
+        activeJobs.remove(observer);
+        AdaptivePoolSizer sizer = adaptivePoolSizer;
+        if(null != sizer){
+            sizer.jobFinished(observer);
+        }
+        JobExecutorJmx currentJmx = jmx;
+        if(null != currentJmx){
+            currentJmx.unregister(observer);
+        }
+    }
+
+    /**
+     * 记录一个被拒绝的 Runnable, 与拒绝策略的计数单位相同
+     */
+    private void recordRejection(){
+        if(null == rejectionCounter){
+            rejectedCount.increment();
+        }
+    }
+
     private String generateJobName(){
         return String.format("job-%d", number.getAndIncrement());
     }
 
+    /**
+     * 批量提交时收集元素的缓冲区
+     * @param <I>
+     */
+    private static final class ItemBuffer<I> implements Consumer<I> {
+        private Object[] items;
+        private int size;
+
+        void reset(int capacity){
+            items = new Object[capacity];
+            size = 0;
+        }
+
+        boolean isFull(){
+            return size == items.length;
+        }
+
+        int size(){
+            return size;
+        }
+
+        Object[] items(){
+            return items;
+        }
+
+        @Override
+        public void accept(I item) {
+            items[size++] = item;
+        }
+    }
+
     public static JobExecutor create(ExecutorService executorService){
         return new JobExecutor(executorService);
     }
 
+    /**
+     * 创建一个在多个 job 之间加权公平调度的 JobExecutor
+     * 每个 job 的任务进入各自的队列, 空闲线程按差额轮询依次从各 job 的队列取任务, 各 job 获得的执行机会与
+     * {@link JobObserver#setWeight(int)} 设置的权重成正比, 大 job 的积压不会拖慢同时运行的小 job
+     * @param poolSize 线程数
+     * @return JobExecutor
+     */
+    public static JobExecutor createFair(int poolSize){
+        ExecutorService executorService = new ThreadPoolExecutor(poolSize, poolSize, 1L,
+                TimeUnit.MINUTES, new FairJobQueue());
+        return create(executorService).setDefaultMaxInFlight(poolSize * DEFAULT_CREDITS_PER_THREAD);
+    }
+
+    /**
+     * 创建一个基于 work-stealing 的 JobExecutor, 适用于 CPU 密集的大量小任务及可拆分的任务
+     * 每个工作线程拥有自己的双端队列, 工作线程中提交的任务进入自己的队列, 空闲线程从其他线程的队列窃取任务
+     * @param parallelism 并行度
+     * @return JobExecutor
+     */
+    public static JobExecutor createWorkStealing(int parallelism){
+        ForkJoinPool pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null, false);
+        return create(pool).setDefaultMaxInFlight(parallelism * 64);
+    }
+
+    /**
+     * 创建一个基于 work-stealing 的 JobExecutor, 并行度为 CPU 核数
+     * @return JobExecutor
+     */
+    public static JobExecutor createWorkStealing(){
+        return createWorkStealing(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 当前运行环境是否支持虚拟线程(Java 21 及以上)
+     * @return boolean
+     */
+    public static boolean isVirtualThreadSupported(){
+        return VirtualThreads.isSupported();
+    }
+
+    /**
+     * 创建一个使用虚拟线程执行任务的 JobExecutor, 适用于阻塞 I/O 型的 job
+     * 每个任务运行在独立的虚拟线程上, 同时执行的任务数不超过 maxConcurrency;
+     * 运行环境不支持虚拟线程时退化为 {@link #create(int, int)}
+     * @param maxConcurrency 最大同时执行的任务数
+     * @return JobExecutor
+     */
+    public static JobExecutor createVirtual(int maxConcurrency){
+        if(!VirtualThreads.isSupported()){
+            return create(maxConcurrency, maxConcurrency);
+        }
+        ExecutorService executorService = new ConcurrencyLimitedExecutorService(
+                VirtualThreads.newVirtualThreadPerTaskExecutor(), maxConcurrency);
+        return create(executorService).setDefaultMaxInFlight(maxConcurrency * DEFAULT_CREDITS_PER_THREAD);
+    }
+
+    /**
+     * 设置之后新建 job 默认的最大在途任务数
+     * @param defaultMaxInFlight 小于等于 0 表示不限制
+     * @return JobExecutor
+     */
+    public JobExecutor setDefaultMaxInFlight(int defaultMaxInFlight) {
+        this.defaultMaxInFlight = Math.max(0, defaultMaxInFlight);
+        return this;
+    }
+
+    @Override
+    public int getDefaultMaxInFlight() {
+        return defaultMaxInFlight;
+    }
+
+    /**
+     * 设置名称, 用于区分监控指标, 应在 {@link #enableJmx()} 之前设置
+     * @param name name
+     * @return JobExecutor
+     */
+    public JobExecutor setName(String name) {
+        if(null == name || name.isEmpty()){
+            throw new IllegalArgumentException("name must not be empty!");
+        }
+        this.name = name;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 尚未结束的 job
+     * @return 当前时刻的副本
+     */
+    public List<JobObserver<?>> getActiveJobs(){
+        return new ArrayList<>(activeJobs);
+    }
+
+    @Override
+    public int getActiveJobCount(){
+        return activeJobs.size();
+    }
+
+    @Override
+    public int getActiveThreadCount(){
+        if(jobExecutor instanceof ThreadPoolExecutor){
+            return ((ThreadPoolExecutor) jobExecutor).getActiveCount();
+        }
+        if(jobExecutor instanceof ForkJoinPool){
+            return ((ForkJoinPool) jobExecutor).getActiveThreadCount();
+        }
+        if(jobExecutor instanceof ConcurrencyLimitedExecutorService){
+            return ((ConcurrencyLimitedExecutorService) jobExecutor).getActiveCount();
+        }
+        return -1;
+    }
+
+    @Override
+    public int getPoolSize(){
+        if(jobExecutor instanceof ThreadPoolExecutor){
+            return ((ThreadPoolExecutor) jobExecutor).getPoolSize();
+        }
+        if(jobExecutor instanceof ForkJoinPool){
+            return ((ForkJoinPool) jobExecutor).getPoolSize();
+        }
+        return -1;
+    }
+
+    @Override
+    public long getQueueDepth(){
+        if(jobExecutor instanceof ThreadPoolExecutor){
+            return ((ThreadPoolExecutor) jobExecutor).getQueue().size();
+        }
+        if(jobExecutor instanceof ForkJoinPool){
+            ForkJoinPool pool = (ForkJoinPool) jobExecutor;
+            return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+        }
+        return -1L;
+    }
+
+    @Override
+    public long getRejectedCount(){
+        return null == rejectionCounter ? rejectedCount.sum() : rejectionCounter.getRejectedCount();
+    }
+
+    /**
+     * 将线程池与尚未结束的 job 注册到平台 MBeanServer, 之后开始的 job 在开始时注册、结束时注销
+     * 线程池的 ObjectName 为 us.luosl.lslt:type=JobExecutor,name="名称",
+     * job 的 ObjectName 为 us.luosl.lslt:type=Job,executor="名称",name="job 名称",id=序号
+     * @return JobExecutor
+     */
+    public JobExecutor enableJmx(){
+        return enableJmx(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public synchronized JobExecutor enableJmx(MBeanServer server){
+        if(null != jmx){
+            throw new RuntimeException("jmx has been enabled!");
+        }
+        JobExecutorJmx newJmx = new JobExecutorJmx(server, this);
+        jmx = newJmx;
+        for(JobObserver<?> observer: activeJobs){
+            newJmx.register(observer);
+        }
+        return this;
+    }
+
+    /**
+     * 注销所有已注册的 MBean
+     * @return JobExecutor
+     */
+    public synchronized JobExecutor disableJmx(){
+        if(null != jmx){
+            jmx.close();
+            jmx = null;
+        }
+        return this;
+    }
+
+    /**
+     * 已注册的 job 的 ObjectName
+     * @param jobObserver jobObserver
+     * @return 未启用 JMX 或 job 未注册时返回 null
+     */
+    public ObjectName getJobObjectName(JobObserver<?> jobObserver){
+        JobExecutorJmx currentJmx = jmx;
+        return null == currentJmx ? null : currentJmx.getJobName(jobObserver);
+    }
+
+    public ObjectName getObjectName(){
+        JobExecutorJmx currentJmx = jmx;
+        return null == currentJmx ? null : currentJmx.getExecutorName();
+    }
+
+    /**
+     * 启用按实测吞吐量调整线程数, 只支持基于 ThreadPoolExecutor 的 JobExecutor;
+     * 线程数在调整时同时设置为核心线程数与最大线程数
+     * @param sizer 调整策略, 每个 AdaptivePoolSizer 只能使用一次
+     * @return JobExecutor
+     */
+    public synchronized JobExecutor enableAdaptiveSizing(AdaptivePoolSizer sizer){
+        if(!(jobExecutor instanceof ThreadPoolExecutor)){
+            throw new RuntimeException("adaptive sizing requires a ThreadPoolExecutor!");
+        }
+        if(null != adaptivePoolSizer){
+            throw new RuntimeException("adaptive sizing has been enabled!");
+        }
+        sizer.start(this, (ThreadPoolExecutor) jobExecutor);
+        adaptivePoolSizer = sizer;
+        return this;
+    }
+
+    public JobExecutor enableAdaptiveSizing(int minPoolSize, int maxPoolSize){
+        return enableAdaptiveSizing(AdaptivePoolSizer.of(minPoolSize, maxPoolSize));
+    }
+
+    /**
+     * 停止调整线程数, 线程数保持在当前值
+     * @return JobExecutor
+     */
+    public synchronized JobExecutor disableAdaptiveSizing(){
+        if(null != adaptivePoolSizer){
+            adaptivePoolSizer.stop();
+            adaptivePoolSizer = null;
+        }
+        return this;
+    }
+
+    public synchronized AdaptivePoolSizer getAdaptivePoolSizer(){
+        return adaptivePoolSizer;
+    }
+
+    /**
+     * 关闭线程池, 已经提交的任务继续执行, 不再接受新任务; 同时停止调整线程数并注销 MBean
+     */
+    public void shutdown(){
+        disableAdaptiveSizing();
+        disableJmx();
+        jobExecutor.shutdown();
+    }
+
+    /**
+     * 立即关闭线程池并中断正在执行的任务
+     * @return 尚未执行的任务
+     */
+    public List<Runnable> shutdownNow(){
+        disableAdaptiveSizing();
+        disableJmx();
+        return jobExecutor.shutdownNow();
+    }
+
+    public boolean isShutdown(){
+        return jobExecutor.isShutdown();
+    }
+
+    /**
+     * 等待关闭后的线程池执行完所有任务
+     * @param timeout timeout
+     * @param unit unit
+     * @return 超时前线程池已经终止时返回 true
+     * @throws InterruptedException InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return jobExecutor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 创建一个按实测吞吐量在 [minPoolSize, maxPoolSize] 之间调整线程数的 JobExecutor, 从 minPoolSize 个线程开始,
+     * 队列容量与在途任务数按 maxPoolSize 设置
+     * @param minPoolSize 最小线程数
+     * @param maxPoolSize 最大线程数
+     * @return JobExecutor
+     * @see AdaptivePoolSizer
+     */
+    public static JobExecutor createAdaptive(int minPoolSize, int maxPoolSize){
+        AdaptivePoolSizer sizer = AdaptivePoolSizer.of(minPoolSize, maxPoolSize);
+        return create(minPoolSize, maxPoolSize).enableAdaptiveSizing(sizer);
+    }
+
+    /**
+     * 创建一个 JobExecutor, 每个 job 默认最多在途 最大线程数 * 2 个任务, 提交端在提交时即被限流,
+     * 队列容量为最大线程数的 10 倍, 同时运行五个以上的 job 才可能占满队列, 此时由拒绝策略兜底
+     * @param corePoolSize corePoolSize
+     * @param maximumPoolSize maximumPoolSize
+     * @return JobExecutor
+     */
     public static JobExecutor create(int corePoolSize, int maximumPoolSize){
+        int queueCapacity = maximumPoolSize * 10;
         ExecutorService executorService = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, 1L,
                 TimeUnit.MINUTES,
-                new LinkedBlockingQueue<>(maximumPoolSize * 10),
+                new LinkedBlockingQueue<>(queueCapacity),
                 new BlockingRejectedExecutionHandler());
-        return create(executorService);
+        return create(executorService).setDefaultMaxInFlight(maximumPoolSize * DEFAULT_CREDITS_PER_THREAD);
     }
 
 }
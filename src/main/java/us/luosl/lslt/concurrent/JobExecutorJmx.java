@@ -0,0 +1,94 @@
+package us.luosl.lslt.concurrent;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 一个 JobExecutor 在 MBeanServer 中注册的 MBean
+ * 注册与注销只在 job 开始与结束时发生, 由自身的锁保证 job 结束后不会再被注册
+ */
+final class JobExecutorJmx {
+
+    static final String DOMAIN = "us.luosl.lslt";
+
+    private static final Logger LOGGER = Logger.getLogger(JobExecutorJmx.class.getName());
+
+    private final MBeanServer server;
+    private final ObjectName executorName;
+    private final String quotedExecutorName;
+    private final Map<JobObserver<?>, ObjectName> jobNames = new HashMap<>();
+    private long jobNumber;
+    private boolean closed;
+
+    JobExecutorJmx(MBeanServer server, JobExecutor executor) {
+        this.server = server;
+        this.quotedExecutorName = ObjectName.quote(executor.getName());
+        try {
+            this.executorName = new ObjectName(String.format("%s:type=JobExecutor,name=%s", DOMAIN, quotedExecutorName));
+            server.registerMBean(new StandardMBean(executor, JobExecutorMXBean.class, true), executorName);
+        } catch (JMException e) {
+            throw new RuntimeException("register executor mbean failed!", e);
+        }
+    }
+
+    ObjectName getExecutorName() {
+        return executorName;
+    }
+
+    synchronized ObjectName getJobName(JobObserver<?> jobObserver){
+        return jobNames.get(jobObserver);
+    }
+
+    /**
+     * 注册一个 job, 已经结束的 job 不再注册; 注册失败只记录日志, 不影响 job 的执行
+     * 没有名称的 job 以空字符串作为 name, 由 id 区分
+     * @param jobObserver jobObserver
+     */
+    synchronized void register(JobObserver<?> jobObserver){
+        if(closed || jobObserver.getStatus() == JobStatus.COMPLETE || jobNames.containsKey(jobObserver)){
+            return;
+        }
+        String jobName = null == jobObserver.getJobName() ? "" : jobObserver.getJobName();
+        try {
+            ObjectName name = new ObjectName(String.format("%s:type=Job,executor=%s,name=%s,id=%d", DOMAIN,
+                    quotedExecutorName, ObjectName.quote(jobName), jobNumber++));
+            server.registerMBean(new StandardMBean(new JobMetrics(jobObserver), JobMXBean.class, true), name);
+            jobNames.put(jobObserver, name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, String.format("register mbean of job [%s] failed", jobName), e);
+        }
+    }
+
+    synchronized void unregister(JobObserver<?> jobObserver){
+        ObjectName name = jobNames.remove(jobObserver);
+        if(null != name){
+            unregister(name);
+        }
+    }
+
+    synchronized void close(){
+        closed = true;
+        for(ObjectName name: jobNames.values()){
+            unregister(name);
+        }
+        jobNames.clear();
+        unregister(executorName);
+    }
+
+    private void unregister(ObjectName name){
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // 已经被外部注销
+        } catch (JMException e) {
+            throw new RuntimeException(String.format("unregister mbean %s failed!", name), e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * JobExecutor 的线程池级监控指标, 通过 {@link JobExecutor#enableJmx()} 注册到 JMX
+ * 无法从底层线程池得到的指标为 -1
+ */
+public interface JobExecutorMXBean {
+
+    String getName();
+
+    /**
+     * 正在执行任务的线程数
+     * @return int
+     */
+    int getActiveThreadCount();
+
+    /**
+     * 线程池当前的线程数
+     * @return int
+     */
+    int getPoolSize();
+
+    /**
+     * 线程池队列中等待执行的任务数
+     * @return long
+     */
+    long getQueueDepth();
+
+    /**
+     * 线程池拒绝的 Runnable 个数, 批量提交的一个批次计一次
+     * @return long
+     */
+    long getRejectedCount();
+
+    /**
+     * 尚未结束的 job 数
+     * @return int
+     */
+    int getActiveJobCount();
+
+    int getDefaultMaxInFlight();
+}
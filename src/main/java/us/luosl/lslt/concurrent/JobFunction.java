@@ -0,0 +1,11 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * job 中对单个元素的处理函数
+ * @param <I> 输入元素类型
+ * @param <C> 处理结果类型
+ */
+@FunctionalInterface
+public interface JobFunction<I, C> {
+    C apply(I item) throws Exception;
+}
@@ -0,0 +1,49 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * 单个 job 的监控指标, job 开始时注册到 JMX, 结束时注销
+ */
+public interface JobMXBean {
+
+    String getJobName();
+
+    String getStatus();
+
+    long getStartTime();
+
+    long getElapsedMillis();
+
+    long getSubmitCount();
+
+    long getAwaitingCount();
+
+    long getRunningCount();
+
+    long getCompleteCount();
+
+    long getErrorCount();
+
+    long getCancelledCount();
+
+    long getRetryCount();
+
+    long getTimeoutCount();
+
+    /**
+     * 按输入文件估算的任务总数, 无法估算时为 -1
+     * @return long
+     */
+    long getEstimatedAllCount();
+
+    /**
+     * job 开始以来平均每秒结束的任务数
+     * @return double
+     */
+    double getThroughput();
+
+    /**
+     * 按平均速度估算的剩余秒数, 任务总数未知时为 -1
+     * @return long
+     */
+    long getEtaSeconds();
+}
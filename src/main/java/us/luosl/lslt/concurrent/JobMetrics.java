@@ -0,0 +1,116 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * 基于 {@link JobObserver#snapshot()} 的 job 监控指标
+ * 只在读取指标时汇总计数器, 任务执行路径上没有额外的同步
+ */
+final class JobMetrics implements JobMXBean {
+
+    private final JobObserver<?> jobObserver;
+
+    JobMetrics(JobObserver<?> jobObserver) {
+        this.jobObserver = jobObserver;
+    }
+
+    /**
+     * job 开始以来平均每秒结束的任务数
+     * @param snapshot snapshot
+     * @return double
+     */
+    static double throughput(JobSnapshot snapshot){
+        long elapsed = snapshot.getElapsedTime();
+        return elapsed > 0 ? snapshot.getFinishedCount() * 1000D / elapsed : 0D;
+    }
+
+    /**
+     * 按平均速度估算的剩余秒数
+     * @param snapshot snapshot
+     * @return 任务总数未知或尚无任务结束时返回 -1, job 已结束时返回 0
+     */
+    static long etaSeconds(JobSnapshot snapshot){
+        if(snapshot.getStatus() == JobStatus.COMPLETE){
+            return 0L;
+        }
+        long all = snapshot.getEstimatedAllCount();
+        double throughput = throughput(snapshot);
+        if(all < 0 || throughput <= 0){
+            return -1L;
+        }
+        return (long) Math.ceil(Math.max(0L, all - snapshot.getFinishedCount()) / throughput);
+    }
+
+    @Override
+    public String getJobName() {
+        return jobObserver.getJobName();
+    }
+
+    @Override
+    public String getStatus() {
+        return String.valueOf(jobObserver.getStatus());
+    }
+
+    @Override
+    public long getStartTime() {
+        return jobObserver.getStartTime();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return jobObserver.snapshot().getElapsedTime();
+    }
+
+    @Override
+    public long getSubmitCount() {
+        return jobObserver.snapshot().getSubmitCount();
+    }
+
+    @Override
+    public long getAwaitingCount() {
+        return jobObserver.snapshot().getAwaitingCount();
+    }
+
+    @Override
+    public long getRunningCount() {
+        return jobObserver.snapshot().getRunningCount();
+    }
+
+    @Override
+    public long getCompleteCount() {
+        return jobObserver.getCompleteCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return jobObserver.getErrorCount();
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return jobObserver.getCancelledCount();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return jobObserver.getRetryCount();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return jobObserver.getTimeoutCount();
+    }
+
+    @Override
+    public long getEstimatedAllCount() {
+        return jobObserver.getEstimatedAllCount();
+    }
+
+    @Override
+    public double getThroughput() {
+        return throughput(jobObserver.snapshot());
+    }
+
+    @Override
+    public long getEtaSeconds() {
+        return etaSeconds(jobObserver.snapshot());
+    }
+}
@@ -1,9 +1,12 @@
 package us.luosl.lslt.concurrent;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * job 观察者
@@ -11,71 +14,590 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class JobObserver<T> {
 
+    /**
+     * 默认最多保留的异常数量
+     */
+    public static final int DEFAULT_ERROR_CAPACITY = 128;
+
     private String jobName;
-    private AtomicLong completeCount = new AtomicLong();
-    private AtomicLong errorCount = new AtomicLong();
-    private AtomicLong runningCount = new AtomicLong();
-    private AtomicLong awaitingCount = new AtomicLong();
-    private AtomicLong submitCount = new AtomicLong();
+    // 计数器均为只增的分段计数器, 等待数与运行数由它们推导, 每个任务只需更新三次
+    private LongAdder completeCount = new LongAdder();
+    private LongAdder errorCount = new LongAdder();
+    private LongAdder cancelledCount = new LongAdder();
+    private LongAdder startedCount = new LongAdder();
+    private LongAdder submitCount = new LongAdder();
+    private LongAdder retryCount = new LongAdder();
+    private LongAdder timeoutCount = new LongAdder();
     private long startTime;
     private AtomicReference<JobStatus> status = new AtomicReference<>(JobStatus.INIT);
-    private LinkedList<Future<T>> futures = new LinkedList<>();
     private JobCallback<T> jobCallback;
+    // 不为 null 时回调在 job 专属的回调线程中执行
+    private CallbackPipeline<T> callbackPipeline;
+    // 未结束的任务数, 初始的 1 代表提交端持有的计数, 在 endSubmit 时释放
+    private AtomicLong pendingCount = new AtomicLong(1);
+    // 所有任务结束时完成
+    private CompletableFuture<JobSummary> completion = new CompletableFuture<>();
+    // 对外暴露的只读视图, 调用方无法通过它改变 job 的完成状态
+    private CompletionStage<JobSummary> completionStage = completion.thenApply(summary -> summary);
+    private List<JobTaskListener<? super T>> taskListeners = new CopyOnWriteArrayList<>();
+    // 所有任务结束后, 在通知等待者之前执行的动作
+    private List<Runnable> completionHooks = new CopyOnWriteArrayList<>();
+    private volatile long completeTime;
+    private AtomicBoolean cancelled = new AtomicBoolean(false);
+    // 公平调度时的权重
+    private volatile int weight = 1;
+    // 任务失败时的重试策略, 为 null 时不重试
+    private volatile RetryPolicy retryPolicy;
+    // 单个任务的执行期限, 0 表示不限制
+    private volatile long taskTimeoutNanos;
+    // 输入文件的读取进度, 由提交端更新, 总字节数为 -1 表示没有输入文件
+    private volatile long inputTotalBytes = -1;
+    private volatile long inputReadBytes;
+    private volatile long inputReadLines;
+    // 执行 job 任务的 JobExecutor, 重试的任务由它重新执行
+    private JobExecutor jobExecutor;
+    // 异常数达到该值时自动取消 job, 0 表示不启用
+    private volatile long failFastThreshold;
+    private BlockingQueue<Throwable> errors = new ArrayBlockingQueue<>(DEFAULT_ERROR_CAPACITY);
+    private AtomicLong droppedErrorCount = new AtomicLong();
+    // 任务在队列中的等待耗时与单个元素的执行耗时
+    private LatencyHistogram queueWaitHistogram = new LatencyHistogram();
+    private LatencyHistogram executionHistogram = new LatencyHistogram();
+    // 在途任务的许可, 为 null 时不限制
+    private Semaphore credits;
+    private int maxInFlight;
 
     protected JobObserver(String jobName) {
         this.jobName = jobName;
     }
 
-    protected void incrRunningCount(){
-        runningCount.incrementAndGet();
+    /**
+     * 任务离开等待队列
+     */
+    protected void incrStartedCount(){
+        startedCount.increment();
     }
 
-    protected void decrRunningCount(){
-        runningCount.decrementAndGet();
+    protected void addStartedCount(long n){
+        startedCount.add(n);
     }
 
     protected void incrCompleteCount(){
-        completeCount.incrementAndGet();
+        completeCount.increment();
     }
 
-    protected void incrAwaitingCount(){
-        awaitingCount.incrementAndGet();
+    protected void incrSubmitCount(){
+        submitCount.increment();
     }
 
-    protected void decrAwaitingCount(){
-        awaitingCount.decrementAndGet();
+    protected void addSubmitCount(long n){
+        submitCount.add(n);
     }
 
-    protected void incrSubmitCount(){
-        submitCount.getAndIncrement();
+    protected void incrErrorCount(){
+        errorCount.increment();
+        checkFailFast();
     }
 
-    protected void incrErrorCount(){
-        errorCount.getAndIncrement();
+    protected void addErrorCount(long n){
+        errorCount.add(n);
+        checkFailFast();
+    }
+
+    private void checkFailFast(){
+        long threshold = failFastThreshold;
+        if(threshold > 0 && !isCancelled() && errorCount.sum() >= threshold){
+            cancel();
+        }
+    }
+
+    /**
+     * 设置快速失败策略, 异常数达到 maxErrors 时自动取消 job
+     * @param maxErrors 1 表示出现第一个异常即取消, 小于等于 0 表示不启用
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> setFailFast(long maxErrors){
+        this.failFastThreshold = Math.max(0L, maxErrors);
+        checkFailFast();
+        return this;
+    }
+
+    public long getFailFastThreshold(){
+        return failFastThreshold;
+    }
+
+    /**
+     * 任务失败后等待重试, 重新回到等待状态, 重试执行时会再次计入开始数
+     */
+    protected void incrRetryCount(){
+        retryCount.increment();
+        startedCount.decrement();
+    }
+
+    /**
+     * 设置任务失败时的重试策略, 只能在提交任务之前设置
+     * @param retryPolicy 为 null 时不重试
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> setRetryPolicy(RetryPolicy retryPolicy){
+        if(getSubmitCount() > 0){
+            throw new RuntimeException("You cannot change the retryPolicy after submit!");
+        }
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy(){
+        return retryPolicy;
+    }
+
+    /**
+     * 超时的任务, 超时同时计入异常数
+     * @param n n
+     */
+    protected void addTimeoutCount(long n){
+        timeoutCount.add(n);
+        addErrorCount(n);
+    }
+
+    /**
+     * 设置单个任务的执行期限, 只能在提交任务之前设置
+     * 超过期限的任务会被中断, 其结果被丢弃并计为超时, job 不再等待它结束; 批量提交时期限按批次大小成倍放宽,
+     * 通过 submitSplittable 提交的任务不受限制
+     * @param timeout 小于等于 0 表示不限制
+     * @param unit unit
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> setTaskTimeout(long timeout, TimeUnit unit){
+        if(getSubmitCount() > 0){
+            throw new RuntimeException("You cannot change the taskTimeout after submit!");
+        }
+        this.taskTimeoutNanos = timeout > 0 ? unit.toNanos(timeout) : 0L;
+        return this;
+    }
+
+    /**
+     * 单个任务的执行期限(纳秒), 0 表示不限制
+     * @return long
+     */
+    public long getTaskTimeoutNanos(){
+        return taskTimeoutNanos;
+    }
+
+    /**
+     * 开始读取一个输入文件
+     * @param totalBytes 文件的字节数
+     */
+    protected void startInput(long totalBytes){
+        this.inputReadLines = 0;
+        this.inputReadBytes = 0;
+        this.inputTotalBytes = totalBytes;
+    }
+
+    /**
+     * 更新输入文件的读取进度
+     * @param readBytes 已经提交的行在文件中占用的字节数
+     * @param readLines 已经提交的行数
+     */
+    protected void updateInputProgress(long readBytes, long readLines){
+        this.inputReadLines = readLines;
+        this.inputReadBytes = readBytes;
+    }
+
+    /**
+     * 输入文件的字节数, 没有输入文件时为 -1
+     * @return long
+     */
+    public long getInputTotalBytes(){
+        return inputTotalBytes;
+    }
+
+    public long getInputReadBytes(){
+        return inputReadBytes;
+    }
+
+    /**
+     * 按已读取部分的平均行长估算输入文件的总行数, 文件读完后为准确值
+     * @return 没有输入文件或尚未读取时返回 -1
+     */
+    public long getEstimatedAllCount(){
+        long total = inputTotalBytes;
+        long bytes = inputReadBytes;
+        long lines = inputReadLines;
+        if(total < 0 || bytes <= 0){
+            return -1L;
+        }
+        if(bytes >= total){
+            return lines;
+        }
+        return Math.max(lines, Math.round((double) lines * total / bytes));
+    }
+
+    protected JobExecutor getJobExecutor(){
+        return jobExecutor;
+    }
+
+    protected void setJobExecutor(JobExecutor jobExecutor){
+        this.jobExecutor = jobExecutor;
+    }
+
+    /**
+     * 任务因 job 被取消而未执行
+     */
+    protected void incrCancelledCount(){
+        cancelledCount.increment();
+    }
+
+    protected void addCancelledCount(long n){
+        cancelledCount.add(n);
+    }
+
+    /**
+     * 记录一个任务异常, 超出容量的异常只计数不保留
+     * @param e e
+     */
+    protected void addError(Throwable e){
+        if(!errors.offer(e)){
+            droppedErrorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 取出并清空当前保留的异常
+     * @return List<Throwable>
+     */
+    protected List<Throwable> drainErrors(){
+        List<Throwable> list = new ArrayList<>(errors.size());
+        errors.drainTo(list);
+        return list;
+    }
+
+    /**
+     * 因超出容量而未被保留的异常数量
+     * @return Long
+     */
+    public Long getDroppedErrorCount(){
+        return droppedErrorCount.get();
+    }
+
+    /**
+     * 设置最多保留的异常数量, 只能在提交任务之前设置
+     * @param errorCapacity errorCapacity
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> setErrorCapacity(int errorCapacity){
+        if(errorCapacity <= 0){
+            throw new IllegalArgumentException("errorCapacity must be positive!");
+        }
+        if(getSubmitCount() > 0){
+            throw new RuntimeException("You cannot change the errorCapacity after submit!");
+        }
+        this.errors = new ArrayBlockingQueue<>(errorCapacity);
+        return this;
+    }
+
+    /**
+     * 设置 job 最多同时在途(等待或正在执行)的任务数, 超出时提交端将被阻塞, 只能在提交任务之前设置
+     * 批量提交时一个批次计为一个任务
+     * @param maxInFlight 小于等于 0 表示不限制
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> setMaxInFlight(int maxInFlight){
+        if(getSubmitCount() > 0){
+            throw new RuntimeException("You cannot change the maxInFlight after submit!");
+        }
+        this.maxInFlight = Math.max(0, maxInFlight);
+        this.credits = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+        return this;
+    }
+
+    public int getMaxInFlight(){
+        return maxInFlight;
+    }
+
+    /**
+     * 设置 job 在公平调度中的权重, 权重越大获得的执行机会越多, 只对 {@link JobExecutor#createFair(int)} 创建的
+     * JobExecutor 生效; 修改在 job 的任务队列下一次变为非空时生效
+     * @param weight 大于 0 的权重, 默认为 1
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> setWeight(int weight){
+        if(weight <= 0){
+            throw new IllegalArgumentException("weight must be positive!");
+        }
+        this.weight = weight;
+        return this;
+    }
+
+    public int getWeight(){
+        return weight;
+    }
+
+    /**
+     * 阻塞获取一个在途许可, 不响应中断
+     */
+    protected void acquireCredit(){
+        if(null != credits){
+            credits.acquireUninterruptibly();
+        }
+    }
+
+    /**
+     * 阻塞获取一个在途许可
+     * @throws InterruptedException InterruptedException
+     */
+    protected void acquireCreditInterruptibly() throws InterruptedException {
+        if(null != credits){
+            credits.acquire();
+        }
+    }
+
+    /**
+     * 在指定时间内获取一个在途许可
+     * @param timeout timeout
+     * @param unit unit
+     * @return 是否获取成功
+     * @throws InterruptedException InterruptedException
+     */
+    protected boolean tryAcquireCredit(long timeout, TimeUnit unit) throws InterruptedException {
+        return null == credits || credits.tryAcquire(timeout, unit);
+    }
+
+    /**
+     * 不等待地获取一个在途许可
+     * @return 是否获取成功, 未限制在途任务数时总是成功
+     */
+    protected boolean tryAcquireCredit(){
+        return null == credits || credits.tryAcquire();
+    }
+
+    protected void releaseCredit(){
+        if(null != credits){
+            credits.release();
+        }
+    }
+
+    /**
+     * 登记一个新任务
+     * 结束提交后只要还有未结束的任务(例如任务中提交子任务)仍可登记, 所有任务结束后登记失败
+     * @return 是否登记成功
+     */
+    protected boolean taskSubmitted(){
+        long n;
+        do {
+            n = pendingCount.get();
+            if(n <= 0) return false;
+        } while (!pendingCount.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    /**
+     * job 是否还能登记新任务
+     * @return boolean
+     */
+    protected boolean isSubmittable(){
+        return pendingCount.get() > 0;
+    }
+
+    /**
+     * 一个任务(或提交端)结束, 最后一个结束者负责唤醒等待线程
+     */
+    protected void taskDone(){
+        if(pendingCount.decrementAndGet() == 0){
+            complete();
+        }
+    }
+
+    /**
+     * 所有任务结束, 将 job 置为 COMPLETE 并通知等待者
+     */
+    private void complete(){
+        completeTime = System.currentTimeMillis();
+        setStatus(JobStatus.COMPLETE);
+        for(Runnable hook: completionHooks){
+            try {
+                hook.run();
+            } catch (Throwable e) {
+                addError(e);
+            }
+        }
+        completion.complete(new JobSummary(snapshot(), new ArrayList<>(errors)));
+    }
+
+    /**
+     * 结束提交, 释放提交端持有的计数
+     * @return 是否是本次调用结束了提交
+     */
+    protected boolean endSubmit(){
+        if(status.compareAndSet(JobStatus.RUNNING, JobStatus.AWAIT_COMPLETE)){
+            taskDone();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 阻塞等待所有任务结束
+     * @throws InterruptedException InterruptedException
+     */
+    protected void await() throws InterruptedException {
+        try {
+            completion.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 注册一个所有任务结束后、通知等待者之前执行的动作, 等待者被唤醒时动作已经执行完毕;
+     * 动作在最后一个结束的线程中同步执行, 应在提交任务之前注册
+     * @param hook hook
+     */
+    protected void beforeComplete(Runnable hook){
+        completionHooks.add(hook);
+    }
+
+    /**
+     * 注册一个 job 结束时执行的动作, job 已经结束时立即执行
+     * @param action action
+     * @param executor 执行动作的线程池
+     */
+    protected void onComplete(Runnable action, Executor executor){
+        completion.thenRunAsync(action, executor);
+    }
+
+    /**
+     * 获取 job 结束的 CompletionStage, 所有任务结束后以结果汇总完成, 可用于非阻塞地等待 job 或串联多个 job
+     * @return CompletionStage<JobSummary>
+     */
+    public CompletionStage<JobSummary> getCompletionStage(){
+        return completionStage;
+    }
+
+    /**
+     * 添加一个单个任务结束时的监听器, 只对之后结束的任务生效
+     * @param listener listener
+     * @return JobObserver<T>
+     */
+    public JobObserver<T> addTaskListener(JobTaskListener<? super T> listener){
+        taskListeners.add(listener);
+        return this;
     }
 
-    public LinkedList<Future<T>> getFutures() {
-        return futures;
+    public JobObserver<T> removeTaskListener(JobTaskListener<? super T> listener){
+        taskListeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * 通知任务监听器, 监听器抛出的异常记录到 job 的异常中, 但不计入异常数
+     * @param result result
+     * @param error error
+     */
+    protected void fireTaskComplete(T result, Throwable error){
+        if(taskListeners.isEmpty()) return;
+        for(JobTaskListener<? super T> listener: taskListeners){
+            try {
+                listener.onTaskComplete(result, error);
+            } catch (Throwable e) {
+                addError(e);
+            }
+        }
+    }
+
+    /**
+     * job 结束的时间, 尚未结束时为 0
+     * @return long
+     */
+    public long getCompleteTime() {
+        return completeTime;
+    }
+
+    public boolean isCancelled(){
+        return cancelled.get();
     }
 
     public Long getCompleteCount() {
-        return completeCount.get();
+        return completeCount.sum();
     }
 
     public Long getRunningCount() {
-        return runningCount.get();
+        long finished = completeCount.sum() + errorCount.sum() + cancelledCount.sum();
+        return Math.max(0L, startedCount.sum() - finished);
     }
 
     public Long getAwaitingCount() {
-        return awaitingCount.get();
+        long started = startedCount.sum();
+        return Math.max(0L, submitCount.sum() - started);
     }
 
     public Long getSubmitCount(){
-        return submitCount.get();
+        return submitCount.sum();
     }
 
     public Long getErrorCount(){
-        return errorCount.get();
+        return errorCount.sum();
+    }
+
+    public Long getCancelledCount(){
+        return cancelledCount.sum();
+    }
+
+    /**
+     * 超时的任务数, 已计入异常数
+     * @return Long
+     */
+    public Long getTimeoutCount(){
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 任务失败后被重试的总次数, 一个任务重试多次时计多次
+     * @return Long
+     */
+    public Long getRetryCount(){
+        return retryCount.sum();
+    }
+
+    /**
+     * 任务从提交到开始执行的等待耗时分布(纳秒), 批量提交时一个批次记录一次
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getQueueWaitHistogram(){
+        return queueWaitHistogram;
+    }
+
+    /**
+     * 单个元素的执行耗时分布(纳秒), 包含回调的耗时
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getExecutionHistogram(){
+        return executionHistogram;
+    }
+
+    /**
+     * 获取 job 当前计数的一致性快照
+     * 按任务状态流转的逆序读取各计数器, 保证推导出的等待数与运行数不会为负,
+     * 且 完成数 + 异常数 + 取消数 + 运行数 + 等待数 = 提交数
+     * @return JobSnapshot
+     */
+    public JobSnapshot snapshot(){
+        JobStatus currentStatus = getStatus();
+        long endTime = completeTime;
+        long complete = completeCount.sum();
+        long error = errorCount.sum();
+        long cancelledTasks = cancelledCount.sum();
+        long retries = retryCount.sum();
+        long timeouts = timeoutCount.sum();
+        long started = startedCount.sum();
+        long submit = submitCount.sum();
+        long finished = complete + error + cancelledTasks;
+        started = Math.max(started, finished);
+        submit = Math.max(submit, started);
+        return new JobSnapshot(jobName, currentStatus, startTime, System.currentTimeMillis(), endTime,
+                submit, submit - started, started - finished, complete, error, cancelledTasks,
+                retries, timeouts, droppedErrorCount.get(),
+                inputTotalBytes, inputReadBytes, getEstimatedAllCount());
     }
 
     public String getJobName() {
@@ -110,11 +632,34 @@ public class JobObserver<T> {
         }
     }
 
-    protected void cancel(){
-        while(true){
-            Future<?> future = futures.poll();
-            if(null == future) break;
-            future.cancel(true);
+    protected CallbackPipeline<T> getCallbackPipeline() {
+        return callbackPipeline;
+    }
+
+    protected void setCallbackPipeline(CallbackPipeline<T> callbackPipeline) {
+        if(getStatus().equals(JobStatus.INIT)){
+            this.callbackPipeline = callbackPipeline;
+        }else{
+            throw new RuntimeException("You cannot change the callbackPipeline at this status!");
+        }
+    }
+
+    /**
+     * 取消 job, 可以在任意线程中调用
+     * 尚未开始执行的任务在出队时被直接丢弃并计为取消, 之后提交的任务不再执行;
+     * 正在执行的任务不会被中断, 可以通过 {@link #isCancelled()} 或 {@link #checkCancelled()} 协作结束
+     * @return 是否是本次调用取消了 job
+     */
+    public boolean cancel(){
+        return cancelled.compareAndSet(false, true);
+    }
+
+    /**
+     * job 已被取消时抛出 {@link JobCancelledException}, 供正在执行的任务检查
+     */
+    public void checkCancelled(){
+        if(isCancelled()){
+            throw new JobCancelledException(jobName);
         }
     }
 
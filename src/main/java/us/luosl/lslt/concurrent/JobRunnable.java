@@ -0,0 +1,14 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * 属于某个 job 的任务, 调度器据此区分不同 job 的任务
+ */
+interface JobRunnable extends Runnable {
+
+    JobObserver<?> getJobObserver();
+
+    /**
+     * 任务没有执行就被放弃时调用(例如等待执行许可时线程池被关闭), 任务中的元素计为取消, 并通知 job 该任务已结束
+     */
+    void abandon();
+}
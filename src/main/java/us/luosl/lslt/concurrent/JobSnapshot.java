@@ -0,0 +1,164 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * job 计数的不可变快照, 由 {@link JobObserver#snapshot()} 生成
+ */
+public final class JobSnapshot {
+
+    private final String jobName;
+    private final JobStatus status;
+    private final long startTime;
+    private final long snapshotTime;
+    private final long completeTime;
+    private final long submitCount;
+    private final long awaitingCount;
+    private final long runningCount;
+    private final long completeCount;
+    private final long errorCount;
+    private final long cancelledCount;
+    private final long retryCount;
+    private final long timeoutCount;
+    private final long droppedErrorCount;
+    private final long inputTotalBytes;
+    private final long inputReadBytes;
+    private final long estimatedAllCount;
+
+    JobSnapshot(String jobName, JobStatus status, long startTime, long snapshotTime, long completeTime,
+                long submitCount, long awaitingCount, long runningCount, long completeCount,
+                long errorCount, long cancelledCount, long retryCount, long timeoutCount,
+                long droppedErrorCount, long inputTotalBytes, long inputReadBytes, long estimatedAllCount) {
+        this.jobName = jobName;
+        this.status = status;
+        this.startTime = startTime;
+        this.snapshotTime = snapshotTime;
+        this.completeTime = completeTime;
+        this.submitCount = submitCount;
+        this.awaitingCount = awaitingCount;
+        this.runningCount = runningCount;
+        this.completeCount = completeCount;
+        this.errorCount = errorCount;
+        this.cancelledCount = cancelledCount;
+        this.retryCount = retryCount;
+        this.timeoutCount = timeoutCount;
+        this.droppedErrorCount = droppedErrorCount;
+        this.inputTotalBytes = inputTotalBytes;
+        this.inputReadBytes = inputReadBytes;
+        this.estimatedAllCount = estimatedAllCount;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * 快照生成的时间
+     * @return long
+     */
+    public long getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    /**
+     * job 结束的时间, 快照生成时尚未结束则为 0
+     * @return long
+     */
+    public long getCompleteTime() {
+        return completeTime;
+    }
+
+    /**
+     * job 已经运行的毫秒数, 已结束的 job 为总耗时
+     * @return long
+     */
+    public long getElapsedTime() {
+        return (completeTime > 0 ? completeTime : snapshotTime) - startTime;
+    }
+
+    public long getSubmitCount() {
+        return submitCount;
+    }
+
+    public long getAwaitingCount() {
+        return awaitingCount;
+    }
+
+    public long getRunningCount() {
+        return runningCount;
+    }
+
+    public long getCompleteCount() {
+        return completeCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /**
+     * 任务失败后被重试的总次数, 等待重试的任务计入等待数
+     * @return long
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * 超时的任务数, 已计入异常数
+     * @return long
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getDroppedErrorCount() {
+        return droppedErrorCount;
+    }
+
+    /**
+     * 输入文件的字节数, 没有输入文件时为 -1
+     * @return long
+     */
+    public long getInputTotalBytes() {
+        return inputTotalBytes;
+    }
+
+    public long getInputReadBytes() {
+        return inputReadBytes;
+    }
+
+    /**
+     * 按输入文件的字节进度估算的任务总数, 无法估算时为 -1
+     * @return long
+     */
+    public long getEstimatedAllCount() {
+        return estimatedAllCount;
+    }
+
+    /**
+     * 已经结束(完成, 异常, 取消)的任务数
+     * @return long
+     */
+    public long getFinishedCount() {
+        return completeCount + errorCount + cancelledCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobSnapshot{jobName=%s, status=%s, submit=%d, awaiting=%d, running=%d, " +
+                        "complete=%d, error=%d, cancelled=%d, retry=%d, timeout=%d}",
+                jobName, status, submitCount, awaitingCount, runningCount,
+                completeCount, errorCount, cancelledCount, retryCount, timeoutCount);
+    }
+}
@@ -3,6 +3,8 @@ package us.luosl.lslt.concurrent;
 import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -18,11 +20,19 @@ public class JobStatistics {
     private AtomicBoolean isRunning = new AtomicBoolean(false);
     private StatInfoFormat statInfoFormat;
     private AtomicLong beforeCompleteCount = new AtomicLong();
+    private LatencyHistogram beforeQueueWait;
+    private LatencyHistogram beforeExecution;
+    private volatile ScheduledFuture<?> statFuture;
 
     private JobStatistics(JobObserver<?> jobObserver){
         this.jobObserver = jobObserver;
     }
 
+    /**
+     * 设置任务总数, 未设置时使用按输入文件字节进度估算的总数
+     * @param allCount allCount
+     * @return JobStatistics
+     */
     public JobStatistics setAllCount(Long allCount){
         this.allCount = allCount;
         return this;
@@ -47,34 +57,60 @@ public class JobStatistics {
         }
     }
 
+    /**
+     * 开始统计, 统计信息由所有 job 共享的调度线程按间隔输出,
+     * job 结束后输出一次汇总信息并停止统计
+     */
     public void startStat(){
         assert !isRunning.get() && null != jobObserver;
         isRunning.set(true);
         init();
-        String threadName = String.format("[%s]统计线程", jobObserver.getJobName());
-        Thread statThread = new Thread(() -> {
-            try{
-                int threshold = JobStatus.COMPLETE.getValue();
-                while(jobObserver.getStatus().getValue() < threshold){
-                    TimeUnit.NANOSECONDS.sleep(interval.toNanos());
-                    invokePrint(jobObserver);
-                }
-                invokePrint(jobObserver);
-            } catch (InterruptedException e) {
-                statInfoFormat.print(String.format("%s异常终止!", threadName));
-            }
-        });
-        statThread.setDaemon(true);
-        statThread.setName(threadName);
-        statThread.start();
+        long intervalNanos = interval.toNanos();
+        ScheduledExecutorService scheduler = SharedScheduler.get();
+        statFuture = scheduler.scheduleAtFixedRate(this::tick, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        // 与定时输出在同一个调度线程中执行, 二者不会并发
+        jobObserver.onComplete(this::finish, scheduler);
+    }
+
+    private void tick(){
+        if(jobObserver.getStatus() == JobStatus.COMPLETE){
+            return;
+        }
+        try {
+            invokePrint(jobObserver);
+        } catch (RuntimeException e) {
+            // 异常会使定时任务终止, 只输出不中断统计
+            statInfoFormat.print(String.format("[%s]统计信息输出异常:%s", jobObserver.getJobName(), e));
+        }
+    }
+
+    private void finish(){
+        if(null != statFuture){
+            statFuture.cancel(false);
+        }
+        statInfoFormat.print(statInfoFormat.mkSummaryInfo(jobObserver.snapshot()));
+        isRunning.set(false);
     }
 
     private void invokePrint(JobObserver<?> jobObserver) {
-        long completeCount = jobObserver.getCompleteCount();
+        JobSnapshot snapshot = jobObserver.snapshot();
+        long completeCount = snapshot.getCompleteCount();
         long intervalCompleteCount = completeCount - beforeCompleteCount.get();
         beforeCompleteCount.set(completeCount);
+        // 统计区间内的耗时分布
+        LatencyHistogram queueWait = jobObserver.getQueueWaitHistogram().copy();
+        LatencyHistogram execution = jobObserver.getExecutionHistogram().copy();
+        LatencyHistogram intervalQueueWait = queueWait.delta(beforeQueueWait);
+        LatencyHistogram intervalExecution = execution.delta(beforeExecution);
+        beforeQueueWait = queueWait;
+        beforeExecution = execution;
+        Long currentAllCount = allCount;
+        if(null == currentAllCount && snapshot.getEstimatedAllCount() >= 0){
+            currentAllCount = snapshot.getEstimatedAllCount();
+        }
         statInfoFormat.print(
-                statInfoFormat.mkStatInfo(interval, allCount, intervalCompleteCount, jobObserver)
+                statInfoFormat.mkStatInfo(interval, currentAllCount, intervalCompleteCount, jobObserver, snapshot,
+                        intervalQueueWait, intervalExecution)
         );
     }
 
@@ -85,25 +121,113 @@ public class JobStatistics {
 
     public interface StatInfoFormat{
         String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount, JobObserver<?> jobObserver);
+
+        /**
+         * 根据 job 的一致性快照生成统计信息, 默认使用 {@link #mkStatInfo(Duration, Long, long, JobObserver)}
+         * @param interval 统计间隔
+         * @param allCount 任务总数
+         * @param intervalCompleteCount 统计区间内完成的任务数
+         * @param jobObserver jobObserver
+         * @param snapshot 本次统计时的 job 快照
+         * @return String
+         */
+        default String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount,
+                                  JobObserver<?> jobObserver, JobSnapshot snapshot){
+            return mkStatInfo(interval, allCount, intervalCompleteCount, jobObserver);
+        }
+
+        /**
+         * 生成包含统计区间内耗时分布的统计信息, 统计线程调用该方法, 默认忽略耗时分布
+         * @param interval 统计间隔
+         * @param allCount 任务总数
+         * @param intervalCompleteCount 统计区间内完成的任务数
+         * @param jobObserver jobObserver
+         * @param snapshot 本次统计时的 job 快照
+         * @param queueWait 统计区间内的排队耗时分布
+         * @param execution 统计区间内的执行耗时分布
+         * @return String
+         */
+        default String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount,
+                                  JobObserver<?> jobObserver, JobSnapshot snapshot,
+                                  LatencyHistogram queueWait, LatencyHistogram execution){
+            return mkStatInfo(interval, allCount, intervalCompleteCount, jobObserver, snapshot);
+        }
         void print(String statInfo);
+
+        /**
+         * 生成 job 结束时的汇总信息
+         * @param snapshot job 结束时的快照
+         * @return String
+         */
+        default String mkSummaryInfo(JobSnapshot snapshot){
+            return snapshot.toString();
+        }
     }
 
     public class StandardOutputStatInfoFormat implements StatInfoFormat{
 
         @Override
         public String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount, JobObserver<?> jobObserver) {
+            return mkStatInfo(interval, allCount, intervalCompleteCount, jobObserver, jobObserver.snapshot());
+        }
+
+        @Override
+        public String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount,
+                                 JobObserver<?> jobObserver, JobSnapshot snapshot) {
             double speed = (double)intervalCompleteCount / interval.getSeconds();
-            long costTime = System.currentTimeMillis() - jobObserver.getStartTime();
-            String base = String.format("执行速度:%.2f/秒, 已完成数:%d, 错误数:%d, 正在运行数:%d, 等待运行数:%d, 已经运行:%s",
-                    speed, jobObserver.getCompleteCount(), jobObserver.getErrorCount(),
-                    jobObserver.getRunningCount(), jobObserver.getAwaitingCount(), costTimeFormat(costTime));
+            long costTime = snapshot.getElapsedTime();
+            String base = String.format("执行速度:%.2f/秒, 已完成数:%d, 错误数:%d, 重试数:%d, 正在运行数:%d, 等待运行数:%d, 已经运行:%s",
+                    speed, snapshot.getCompleteCount(), snapshot.getErrorCount(), snapshot.getRetryCount(),
+                    snapshot.getRunningCount(), snapshot.getAwaitingCount(), costTimeFormat(costTime));
             if(null != allCount){
-                double rate = (double)jobObserver.getCompleteCount() / allCount * 100;
-                long estimatedTime = (long) ((allCount - jobObserver.getCompleteCount() ) / speed * 1000);
+                double rate = (double)snapshot.getCompleteCount() / allCount * 100;
+                long estimatedTime = (long) ((allCount - snapshot.getCompleteCount() ) / speed * 1000);
                 base = String.format("当前进度:%.2f%%, 预计还需要花费:%s ,%s",
                         rate, costTimeFormat(estimatedTime), base);
             }
-            return String.format("正在执行[%s] %s", jobObserver.getJobName(), base);
+            if(snapshot.getInputTotalBytes() > 0){
+                base = String.format("%s, 已读取:%.2f%%", base,
+                        (double) snapshot.getInputReadBytes() / snapshot.getInputTotalBytes() * 100);
+            }
+            return String.format("正在执行[%s] %s", snapshot.getJobName(), base);
+        }
+
+        @Override
+        public String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount,
+                                 JobObserver<?> jobObserver, JobSnapshot snapshot,
+                                 LatencyHistogram queueWait, LatencyHistogram execution) {
+            String base = mkStatInfo(interval, allCount, intervalCompleteCount, jobObserver, snapshot);
+            if(queueWait.getCount() == 0 && execution.getCount() == 0){
+                return base;
+            }
+            return String.format("%s, 排队耗时[%s], 执行耗时[%s]", base, latencyFormat(queueWait), latencyFormat(execution));
+        }
+
+        @Override
+        public String mkSummaryInfo(JobSnapshot snapshot) {
+            long costTime = snapshot.getElapsedTime();
+            double speed = costTime > 0 ? snapshot.getFinishedCount() * 1000D / costTime : 0D;
+            return String.format("执行完成[%s] 已完成数:%d, 错误数:%d, 超时数:%d, 重试数:%d, 取消数:%d, 平均速度:%.2f/秒, 总耗时:%s",
+                    snapshot.getJobName(), snapshot.getCompleteCount(), snapshot.getErrorCount(),
+                    snapshot.getTimeoutCount(), snapshot.getRetryCount(), snapshot.getCancelledCount(), speed, costTimeFormat(costTime));
+        }
+
+        private String latencyFormat(LatencyHistogram histogram){
+            return String.format("p50:%s p99:%s p999:%s max:%s",
+                    nanosFormat(histogram.getValueAtPercentile(50)),
+                    nanosFormat(histogram.getValueAtPercentile(99)),
+                    nanosFormat(histogram.getValueAtPercentile(99.9)),
+                    nanosFormat(histogram.getMax()));
+        }
+
+        private String nanosFormat(long nanos){
+            if(nanos >= 1_000_000_000L){
+                return String.format("%.2fs", nanos / 1e9);
+            }else if(nanos >= 1_000_000L){
+                return String.format("%.2fms", nanos / 1e6);
+            }else{
+                return String.format("%.2fµs", nanos / 1e3);
+            }
         }
 
         private String costTimeFormat(long costTime){
@@ -0,0 +1,77 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * job 结束时的结果汇总, 由 {@link JobObserver#getCompletionStage()} 返回
+ */
+public final class JobSummary {
+
+    private final JobSnapshot snapshot;
+    private final List<Throwable> errors;
+
+    JobSummary(JobSnapshot snapshot, List<Throwable> errors) {
+        this.snapshot = snapshot;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public String getJobName() {
+        return snapshot.getJobName();
+    }
+
+    /**
+     * job 结束时的计数快照
+     * @return JobSnapshot
+     */
+    public JobSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public long getSubmitCount() {
+        return snapshot.getSubmitCount();
+    }
+
+    public long getCompleteCount() {
+        return snapshot.getCompleteCount();
+    }
+
+    public long getErrorCount() {
+        return snapshot.getErrorCount();
+    }
+
+    public long getCancelledCount() {
+        return snapshot.getCancelledCount();
+    }
+
+    /**
+     * job 的总耗时(毫秒)
+     * @return long
+     */
+    public long getElapsedTime() {
+        return snapshot.getElapsedTime();
+    }
+
+    /**
+     * job 结束时保留的异常, 数量不超过 JobObserver 的异常容量
+     * @return List<Throwable>
+     */
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    /**
+     * 是否所有任务都执行成功
+     * @return boolean
+     */
+    public boolean isSuccess() {
+        return snapshot.getErrorCount() == 0 && snapshot.getCancelledCount() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobSummary{jobName=%s, submit=%d, complete=%d, error=%d, cancelled=%d, elapsed=%dms}",
+                getJobName(), getSubmitCount(), getCompleteCount(), getErrorCount(), getCancelledCount(),
+                getElapsedTime());
+    }
+}
@@ -0,0 +1,275 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提交到线程池中的 job 任务, 负责维护 JobObserver 上的计数并在结束时通知 job
+ * 一个 JobTask 可以包含单个元素, 也可以包含一批元素, 计数始终按元素维护
+ * @param <I> 元素类型
+ * @param <C> 处理结果类型
+ */
+class JobTask<I, C> implements JobRunnable {
+
+    private static final JobFunction<Callable<Object>, Object> CALL = Callable::call;
+
+    private final JobObserver<C> jobObserver;
+    private final JobFunction<? super I, ? extends C> fn;
+    private final I item;
+    private final Object[] batch;
+    private final int batchSize;
+    private final BatchSizer batchSizer;
+    // 是否持有 job 的在途许可, 持有时结束后归还
+    private boolean creditHeld = true;
+    private long submitNanos;
+    // 该任务是第几次尝试执行, 只对单个元素的任务有意义
+    private int attempt = 1;
+    // 单独为该任务设置的执行期限, 0 表示使用 job 的设置
+    private long timeoutNanos;
+
+    private JobTask(JobObserver<C> jobObserver, JobFunction<? super I, ? extends C> fn,
+                    I item, Object[] batch, int batchSize, BatchSizer batchSizer) {
+        this.jobObserver = jobObserver;
+        this.fn = fn;
+        this.item = item;
+        this.batch = batch;
+        this.batchSize = batchSize;
+        this.batchSizer = batchSizer;
+    }
+
+    /**
+     * 创建一个执行 Callable 的任务
+     * @param callable callable
+     * @param jobObserver jobObserver
+     * @param <C> <C>
+     * @return JobTask
+     */
+    @SuppressWarnings("unchecked")
+    static <C> JobTask<Callable<C>, C> of(Callable<C> callable, JobObserver<C> jobObserver){
+        JobFunction<Callable<C>, C> call = (JobFunction<Callable<C>, C>) (JobFunction<?, ?>) CALL;
+        return new JobTask<>(jobObserver, call, callable, null, 1, null);
+    }
+
+    /**
+     * 创建一个执行单个元素的任务
+     * @param item item
+     * @param fn fn
+     * @param jobObserver jobObserver
+     * @param <I> <I>
+     * @param <C> <C>
+     * @return JobTask
+     */
+    static <I, C> JobTask<I, C> of(I item, JobFunction<? super I, ? extends C> fn, JobObserver<C> jobObserver){
+        return new JobTask<>(jobObserver, fn, item, null, 1, null);
+    }
+
+    /**
+     * 创建一个批量执行的任务
+     * @param batch 元素数组, 前 batchSize 个为有效元素
+     * @param batchSize batchSize
+     * @param fn fn
+     * @param jobObserver jobObserver
+     * @param batchSizer 用于反馈单个元素耗时, 可以为 null
+     * @param <I> <I>
+     * @param <C> <C>
+     * @return JobTask
+     */
+    static <I, C> JobTask<I, C> ofBatch(Object[] batch, int batchSize, JobFunction<? super I, ? extends C> fn,
+                                        JobObserver<C> jobObserver, BatchSizer batchSizer){
+        return new JobTask<>(jobObserver, fn, null, batch, batchSize, batchSizer);
+    }
+
+    /**
+     * 任务包含的元素数量
+     * @return int
+     */
+    int size(){
+        return batchSize;
+    }
+
+    void setCreditHeld(boolean creditHeld){
+        this.creditHeld = creditHeld;
+    }
+
+    /**
+     * 记录提交时间, 用于统计排队耗时
+     */
+    void markSubmitted(){
+        this.submitNanos = System.nanoTime();
+    }
+
+    /**
+     * 单独设置该任务的执行期限, 覆盖 job 的设置
+     * @param timeoutNanos timeoutNanos
+     */
+    void setTimeoutNanos(long timeoutNanos){
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    @Override
+    public JobObserver<?> getJobObserver() {
+        return jobObserver;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+        jobObserver.getQueueWaitHistogram().record(System.nanoTime() - submitNanos);
+        TaskDeadline deadline = armDeadline();
+        try {
+            if(null == batch){
+                runItem(jobObserver, item, fn, attempt, timeoutNanos, deadline);
+            }else{
+                long begin = System.nanoTime();
+                for(int i = 0; i < batchSize; i++){
+                    if(null != deadline && deadline.isTimedOut()) break;
+                    runItem(jobObserver, (I) batch[i], fn, 1, timeoutNanos, deadline);
+                }
+                if(null != batchSizer){
+                    batchSizer.record(System.nanoTime() - begin, batchSize);
+                }
+            }
+        } finally {
+            // 已经超时的任务由超时处理归还许可并结束
+            if(null == deadline || deadline.finish()){
+                if(creditHeld){
+                    jobObserver.releaseCredit();
+                }
+                jobObserver.taskDone();
+            }
+        }
+    }
+
+    @Override
+    public void abandon() {
+        jobObserver.addStartedCount(batchSize);
+        jobObserver.addCancelledCount(batchSize);
+        if(creditHeld){
+            jobObserver.releaseCredit();
+        }
+        jobObserver.taskDone();
+    }
+
+    /**
+     * job 或任务设置了执行期限时为本次执行计时; 此时任务中的元素在开始时一次计为已开始,
+     * 超时处理可以直接把剩余元素计为超时
+     * @return 未设置期限时为 null
+     */
+    private TaskDeadline armDeadline(){
+        long timeout = timeoutNanos > 0 ? timeoutNanos : jobObserver.getTaskTimeoutNanos();
+        if(timeout <= 0){
+            return null;
+        }
+        jobObserver.addStartedCount(batchSize);
+        long total = timeout > Long.MAX_VALUE / batchSize ? Long.MAX_VALUE : timeout * batchSize;
+        return TaskDeadline.arm(jobObserver, batchSize, creditHeld, total);
+    }
+
+    /**
+     * 执行单个元素并维护计数, 异常计入 job 而不会抛出
+     * @param jobObserver jobObserver
+     * @param item item
+     * @param fn fn
+     * @param <I> <I>
+     * @param <C> <C>
+     */
+    static <I, C> void runItem(JobObserver<C> jobObserver, I item, JobFunction<? super I, ? extends C> fn){
+        runItem(jobObserver, item, fn, 1, 0L, null);
+    }
+
+    /**
+     * 执行单个元素并维护计数, 可重试的异常交给定时器重新调度, 其余异常计入 job 而不会抛出
+     * @param jobObserver jobObserver
+     * @param item item
+     * @param fn fn
+     * @param attempt 第几次尝试, 从 1 开始
+     * @param timeoutNanos 任务单独设置的执行期限, 重试时沿用
+     * @param deadline 执行期限, 为 null 时不限制; 不为 null 时元素已计为开始, 超时后的结果被丢弃
+     * @param <I> <I>
+     * @param <C> <C>
+     */
+    private static <I, C> void runItem(JobObserver<C> jobObserver, I item, JobFunction<? super I, ? extends C> fn,
+                                       int attempt, long timeoutNanos, TaskDeadline deadline){
+        if(null == deadline){
+            jobObserver.incrStartedCount();
+        }
+        if(jobObserver.isCancelled()){
+            if(null == deadline || deadline.claim()){
+                jobObserver.incrCancelledCount();
+            }
+            return;
+        }
+        long begin = System.nanoTime();
+        CallbackPipeline<C> pipeline = jobObserver.getCallbackPipeline();
+        C c = null;
+        Throwable error = null;
+        try {
+            c = fn.apply(item);
+        } catch (Throwable e) {
+            error = e;
+        }
+        if(null != deadline && !deadline.claim()){
+            // 已经超时并计数, 丢弃结果
+            jobObserver.getExecutionHistogram().record(System.nanoTime() - begin);
+            return;
+        }
+        try {
+            if(null == error && null == pipeline){
+                // 执行回调函数
+                if(null != jobObserver.getJobCallback()){
+                    jobObserver.getJobCallback().callback(c);
+                }
+                jobObserver.incrCompleteCount();
+            }
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            jobObserver.getExecutionHistogram().record(System.nanoTime() - begin);
+        }
+        if(error instanceof JobCancelledException){
+            // 任务响应取消提前结束
+            jobObserver.incrCancelledCount();
+            return;
+        }
+        if(null != error){
+            if(scheduleRetry(jobObserver, item, fn, attempt, timeoutNanos, error)){
+                return;
+            }
+            jobObserver.incrErrorCount();
+            jobObserver.addError(error);
+        }
+        if(null != pipeline && null == error){
+            // 交给回调线程, 由其完成计数并通知监听器
+            pipeline.publish(c);
+            return;
+        }
+        jobObserver.fireTaskComplete(error == null ? c : null, error);
+    }
+
+    /**
+     * 按 job 的重试策略安排一次重试, 等待期间由共享调度器计时, 不占用工作线程
+     * 重试任务登记为 job 未结束的任务, 重试结束前 job 不会结束
+     * @return 是否安排了重试
+     */
+    private static <I, C> boolean scheduleRetry(JobObserver<C> jobObserver, I item,
+                                                JobFunction<? super I, ? extends C> fn, int attempt,
+                                                long timeoutNanos, Throwable e){
+        RetryPolicy retryPolicy = jobObserver.getRetryPolicy();
+        JobExecutor jobExecutor = jobObserver.getJobExecutor();
+        if(null == retryPolicy || null == jobExecutor || jobObserver.isCancelled()
+                || !retryPolicy.shouldRetry(e, attempt)){
+            return false;
+        }
+        JobTask<I, C> retry = new JobTask<>(jobObserver, fn, item, null, 1, null);
+        retry.attempt = attempt + 1;
+        retry.timeoutNanos = timeoutNanos;
+        // 原任务结束时照常归还许可, 重试在重新执行前另外获取许可, 见 JobExecutor.executeRetry
+        retry.creditHeld = false;
+        // 当前任务尚未结束, 登记一定成功
+        jobObserver.taskSubmitted();
+        jobObserver.incrRetryCount();
+        SharedScheduler.get().schedule(() -> jobExecutor.executeRetry(retry),
+                retryPolicy.backoffNanos(attempt), TimeUnit.NANOSECONDS);
+        return true;
+    }
+}
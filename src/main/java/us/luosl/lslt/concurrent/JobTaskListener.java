@@ -0,0 +1,16 @@
+package us.luosl.lslt.concurrent;
+
+/**
+ * job 中单个任务结束时的监听器, 在执行任务的线程中被调用
+ * @param <C>
+ */
+@FunctionalInterface
+public interface JobTaskListener<C> {
+
+    /**
+     * 任务结束
+     * @param result 任务结果, 任务异常时为 null
+     * @param error 任务异常, 任务成功时为 null
+     */
+    void onTaskComplete(C result, Throwable error);
+}
@@ -0,0 +1,188 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定大小的对数分桶耗时直方图, 单位为纳秒
+ * 每个 2 的幂区间再均分为 {@link #SUB_BUCKET_COUNT} 个子桶, 相对误差不超过 1/8;
+ * 桶数组在创建时一次分配, 记录时只做原子自增, 不产生任何对象。
+ * 为了减少多线程记录时的竞争, 计数按线程分为若干条带, 读取时再合并
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * 覆盖 [0, Long.MAX_VALUE] 所需的桶数
+     */
+    static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+    private static final int MAX_STRIPES = 8;
+
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(defaultStripes());
+    }
+
+    private LatencyHistogram(int stripes) {
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKET_COUNT);
+    }
+
+    private static int defaultStripes(){
+        int cpus = Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors());
+        return Integer.highestOneBit(Math.max(1, cpus));
+    }
+
+    static int bucketIndex(long value){
+        if(value < SUB_BUCKET_COUNT){
+            return (int) Math.max(0L, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    static long bucketLowerBound(int index){
+        if(index < SUB_BUCKET_COUNT){
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long bucketUpperBound(int index){
+        return index + 1 >= BUCKET_COUNT ? Long.MAX_VALUE : bucketLowerBound(index + 1) - 1;
+    }
+
+    /**
+     * 记录一个耗时
+     * @param nanos 纳秒, 负数按 0 记录
+     */
+    public void record(long nanos){
+        long value = Math.max(0L, nanos);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet(stripe * BUCKET_COUNT + bucketIndex(value));
+        long currentMax;
+        while(value > (currentMax = max.get())){
+            if(max.compareAndSet(currentMax, value)) break;
+        }
+    }
+
+    private long bucketCount(int index){
+        long sum = 0;
+        for(int stripe = 0; stripe <= stripeMask; stripe++){
+            sum += counts.get(stripe * BUCKET_COUNT + index);
+        }
+        return sum;
+    }
+
+    /**
+     * 记录的总次数
+     * @return long
+     */
+    public long getCount(){
+        long sum = 0;
+        for(int i = 0; i < counts.length(); i++){
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * 记录过的最大耗时
+     * @return long
+     */
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * 获取百分位耗时, 返回值为所在桶的上界(不超过最大值)
+     * @param percentile 0 到 100 之间
+     * @return long
+     */
+    public long getValueAtPercentile(double percentile){
+        long[] merged = new long[BUCKET_COUNT];
+        long total = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            merged[i] = bucketCount(i);
+            total += merged[i];
+        }
+        if(total == 0) return 0L;
+        double p = Math.max(0D, Math.min(100D, percentile));
+        long rank = Math.max(1L, (long) Math.ceil(p / 100D * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            seen += merged[i];
+            if(seen >= rank){
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 将另一个直方图的记录合并到当前直方图
+     * @param other other
+     */
+    public void merge(LatencyHistogram other){
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            long count = other.bucketCount(i);
+            if(count != 0){
+                counts.addAndGet(i, count);
+            }
+        }
+        long otherMax = other.getMax();
+        long currentMax;
+        while(otherMax > (currentMax = max.get())){
+            if(max.compareAndSet(currentMax, otherMax)) break;
+        }
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset(){
+        for(int i = 0; i < counts.length(); i++){
+            counts.set(i, 0L);
+        }
+        max.set(0L);
+    }
+
+    /**
+     * 复制一份当前记录, 并发记录时得到的是近似的快照
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram copy(){
+        LatencyHistogram copy = new LatencyHistogram(1);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * 计算当前记录相对于较早快照的增量, 用于得到一个统计区间内的分布;
+     * 区间最大值无法精确还原, 取增量中最高非空桶的上界(不超过总的最大值)
+     * @param earlier 较早时候通过 {@link #copy()} 得到的快照
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram delta(LatencyHistogram earlier){
+        LatencyHistogram delta = new LatencyHistogram(1);
+        int highest = -1;
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            long count = bucketCount(i) - (null == earlier ? 0L : earlier.bucketCount(i));
+            if(count > 0){
+                delta.counts.set(i, count);
+                highest = i;
+            }
+        }
+        if(highest >= 0){
+            delta.max.set(Math.min(bucketUpperBound(highest), getMax()));
+        }
+        return delta;
+    }
+}
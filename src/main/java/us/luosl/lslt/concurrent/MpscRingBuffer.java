@@ -0,0 +1,84 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界的多生产者单消费者环形缓冲区
+ * 每个槽位带有一个序号: 生产者通过 CAS 抢占写入位置, 写入元素后发布序号; 消费者只读取已发布的槽位,
+ * 取出后把序号推进一圈使槽位重新可写。入队与出队都不加锁, 也不分配对象
+ * @param <E>
+ */
+class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // 只由消费者线程读写
+    private long head;
+
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.mask = size - 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++){
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity(){
+        return buffer.length;
+    }
+
+    /**
+     * 尝试放入一个元素, 可以被多个线程同时调用
+     * @param e 非 null 元素
+     * @return 缓冲区已满时返回 false
+     */
+    boolean offer(E e){
+        long pos = tail.get();
+        while(true){
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if(diff == 0){
+                if(tail.compareAndSet(pos, pos + 1)){
+                    buffer[index] = e;
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            }else if(diff < 0){
+                return false;
+            }else{
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出一个元素, 只能由消费者线程调用
+     * @return 缓冲区为空时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    E poll(){
+        int index = (int) head & mask;
+        if(sequences.get(index) != head + 1){
+            return null;
+        }
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        sequences.lazySet(index, head + buffer.length);
+        head++;
+        return e;
+    }
+
+    /**
+     * 缓冲区是否为空, 只能由消费者线程调用
+     * @return boolean
+     */
+    boolean isEmpty(){
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,233 @@
+package us.luosl.lslt.concurrent;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 以 Prometheus 文本格式输出 JobExecutor 及其尚未结束的 job 的监控指标
+ * 每次采集时为每个 job 生成一次快照, 任务执行路径上没有额外的同步;
+ * 可以直接调用 {@link #scrape()} 接入已有的 HTTP 服务, 也可以通过 {@link #start(int)} 在本机回环地址上启动 /metrics 端点。
+ * 指标以 executor 与 job 名称作为标签, 同时运行的 job 应使用不同的名称
+ */
+public class PrometheusExporter implements Closeable {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PATH = "/metrics";
+
+    private final List<JobExecutor> executors = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    private PrometheusExporter() {
+    }
+
+    public static PrometheusExporter of(JobExecutor... executors){
+        PrometheusExporter exporter = new PrometheusExporter();
+        for(JobExecutor executor: executors){
+            exporter.register(executor);
+        }
+        return exporter;
+    }
+
+    public PrometheusExporter register(JobExecutor executor){
+        if(null == executor){
+            throw new IllegalArgumentException("executor must not be null!");
+        }
+        executors.add(executor);
+        return this;
+    }
+
+    public PrometheusExporter unregister(JobExecutor executor){
+        executors.remove(executor);
+        return this;
+    }
+
+    /**
+     * 生成当前时刻的全部指标
+     * @return Prometheus 文本格式
+     */
+    public String scrape(){
+        List<JobExecutor> executorRows = new ArrayList<>(executors);
+        List<JobRow> jobRows = new ArrayList<>();
+        for(JobExecutor executor: executorRows){
+            for(JobObserver<?> observer: executor.getActiveJobs()){
+                jobRows.add(new JobRow(executor.getName(), observer.snapshot()));
+            }
+        }
+        StringBuilder out = new StringBuilder(256 + executorRows.size() * 512 + jobRows.size() * 1024);
+        Function<JobExecutor, String> executorLabels = executor -> labels("executor", executor.getName());
+        family(out, "lslt_executor_active_threads", "gauge", "Threads that are executing tasks.",
+                executorRows, executorLabels, executor -> known(executor.getActiveThreadCount()));
+        family(out, "lslt_executor_pool_size", "gauge", "Threads in the pool.",
+                executorRows, executorLabels, executor -> known(executor.getPoolSize()));
+        family(out, "lslt_executor_queue_depth", "gauge", "Tasks waiting in the pool queue.",
+                executorRows, executorLabels, executor -> known(executor.getQueueDepth()));
+        family(out, "lslt_executor_rejected_total", "counter", "Runnables rejected by the pool; a batch of elements counts once.",
+                executorRows, executorLabels, JobExecutor::getRejectedCount);
+        family(out, "lslt_executor_active_jobs", "gauge", "Jobs that have not completed.",
+                executorRows, executorLabels, JobExecutor::getActiveJobCount);
+
+        Function<JobRow, String> jobLabels = row -> labels("executor", row.executorName,
+                "job", row.snapshot.getJobName());
+        family(out, "lslt_job_submitted_total", "counter", "Tasks submitted to the job.",
+                jobRows, jobLabels, row -> row.snapshot.getSubmitCount());
+        family(out, "lslt_job_awaiting", "gauge", "Tasks waiting to run.",
+                jobRows, jobLabels, row -> row.snapshot.getAwaitingCount());
+        family(out, "lslt_job_running", "gauge", "Tasks running.",
+                jobRows, jobLabels, row -> row.snapshot.getRunningCount());
+        family(out, "lslt_job_completed_total", "counter", "Tasks completed successfully.",
+                jobRows, jobLabels, row -> row.snapshot.getCompleteCount());
+        family(out, "lslt_job_errors_total", "counter", "Tasks failed, including timeouts.",
+                jobRows, jobLabels, row -> row.snapshot.getErrorCount());
+        family(out, "lslt_job_cancelled_total", "counter", "Tasks cancelled.",
+                jobRows, jobLabels, row -> row.snapshot.getCancelledCount());
+        family(out, "lslt_job_retries_total", "counter", "Task retries.",
+                jobRows, jobLabels, row -> row.snapshot.getRetryCount());
+        family(out, "lslt_job_timeouts_total", "counter", "Tasks timed out.",
+                jobRows, jobLabels, row -> row.snapshot.getTimeoutCount());
+        family(out, "lslt_job_elapsed_seconds", "gauge", "Seconds since the job started.",
+                jobRows, jobLabels, row -> row.snapshot.getElapsedTime() / 1000D);
+        family(out, "lslt_job_throughput", "gauge", "Average finished tasks per second since the job started.",
+                jobRows, jobLabels, row -> JobMetrics.throughput(row.snapshot));
+        family(out, "lslt_job_estimated_total", "gauge", "Estimated total tasks from input file progress.",
+                jobRows, jobLabels, row -> known(row.snapshot.getEstimatedAllCount()));
+        family(out, "lslt_job_eta_seconds", "gauge", "Estimated seconds until the job completes.",
+                jobRows, jobLabels, row -> known(JobMetrics.etaSeconds(row.snapshot)));
+        return out.toString();
+    }
+
+    /**
+     * 在本机回环地址上启动 HTTP 端点, 路径为 /metrics
+     * @param port 端口, 0 表示随机选择空闲端口
+     * @return PrometheusExporter
+     * @throws IOException 端口绑定失败
+     */
+    public synchronized PrometheusExporter start(int port) throws IOException {
+        if(null != server){
+            throw new RuntimeException("exporter has been started!");
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext(PATH, this::handle);
+        httpServer.start();
+        server = httpServer;
+        return this;
+    }
+
+    /**
+     * HTTP 端点实际监听的端口
+     * @return 未启动时返回 -1
+     */
+    public synchronized int getPort(){
+        return null == server ? -1 : server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if(!"GET".equals(method) && !"HEAD".equals(method)){
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if("HEAD".equals(method)){
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream os = exchange.getResponseBody()){
+                os.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 停止 HTTP 端点
+     */
+    @Override
+    public synchronized void close() {
+        if(null != server){
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static <R> void family(StringBuilder out, String name, String type, String help, List<R> rows,
+                                   Function<R, String> labels, ToDoubleFunction<R> value){
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for(R row: rows){
+            double v = value.applyAsDouble(row);
+            if(Double.isNaN(v)){
+                continue;
+            }
+            out.append(name).append(labels.apply(row)).append(' ');
+            if(v == Math.rint(v) && Math.abs(v) < 1e15){
+                out.append((long) v);
+            }else{
+                out.append(v);
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * 小于 0 表示无法得到的指标, 不输出
+     */
+    private static double known(long value){
+        return value < 0 ? Double.NaN : value;
+    }
+
+    private static String labels(String... pairs){
+        StringBuilder sb = new StringBuilder("{");
+        for(int i = 0; i < pairs.length; i += 2){
+            if(i > 0){
+                sb.append(',');
+            }
+            sb.append(pairs[i]).append("=\"");
+            escape(sb, pairs[i + 1]);
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void escape(StringBuilder sb, String value){
+        if(null == value){
+            // 没有名称的 job 输出为空标签
+            return;
+        }
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(c == '\\' || c == '"'){
+                sb.append('\\').append(c);
+            }else if(c == '\n'){
+                sb.append("\\n");
+            }else{
+                sb.append(c);
+            }
+        }
+    }
+
+    private static final class JobRow {
+        private final String executorName;
+        private final JobSnapshot snapshot;
+
+        JobRow(String executorName, JobSnapshot snapshot) {
+            this.executorName = executorName;
+            this.snapshot = snapshot;
+        }
+    }
+}
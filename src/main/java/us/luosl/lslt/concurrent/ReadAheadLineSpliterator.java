@@ -0,0 +1,202 @@
+package us.luosl.lslt.concurrent;
+
+import us.luosl.lslt.lang.FileUtils;
+import us.luosl.lslt.lang.OffsetLineReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 在独立的读取线程中预读文件行的 Spliterator
+ * 读取线程按批读取行并放入有界队列, 队列满时等待, 因此预读的行数不超过 预读批次数 * 每批行数;
+ * 提交端每取出一批就更新 job 的输入进度, 字节进度与行数一起用于估算文件的总行数
+ */
+final class ReadAheadLineSpliterator implements Spliterator<String>, Closeable {
+
+    static final int DEFAULT_READ_AHEAD_BATCHES = 16;
+    private static final int BATCH_LINES = 1024;
+    // 读取线程等待队列空位时检查关闭标记的间隔
+    private static final long OFFER_INTERVAL_MILLIS = 100L;
+    private static final Batch END = new Batch(null, 0, 0L, null);
+
+    private final OffsetLineReader reader;
+    private final JobObserver<?> jobObserver;
+    private final BlockingQueue<Batch> queue;
+    private volatile boolean closed;
+    // 以下字段只由提交端使用
+    private String[] lines;
+    private int index;
+    private int size;
+    private long readLines;
+    private boolean finished;
+
+    private ReadAheadLineSpliterator(OffsetLineReader reader, JobObserver<?> jobObserver, int readAheadBatches) {
+        this.reader = reader;
+        this.jobObserver = jobObserver;
+        this.queue = new ArrayBlockingQueue<>(readAheadBatches);
+    }
+
+    /**
+     * 打开文件并启动读取线程
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @param jobObserver 更新输入进度的 job
+     * @param readAheadBatches 最多预读的批次数
+     * @return ReadAheadLineSpliterator
+     * @throws IOException 文件打开失败
+     */
+    static ReadAheadLineSpliterator open(File file, String charset, JobObserver<?> jobObserver,
+                                         int readAheadBatches) throws IOException {
+        if(readAheadBatches <= 0){
+            throw new IllegalArgumentException("readAheadBatches must be greater than 0!");
+        }
+        OffsetLineReader reader = FileUtils.openOffsetLineReader(file, charset, 0L);
+        ReadAheadLineSpliterator spliterator = new ReadAheadLineSpliterator(reader, jobObserver, readAheadBatches);
+        jobObserver.startInput(file.length());
+        Thread thread = new Thread(spliterator::read, String.format("lslt-read-ahead-%s", jobObserver.getJobName()));
+        thread.setDaemon(true);
+        thread.start();
+        return spliterator;
+    }
+
+    /**
+     * 读取线程
+     */
+    private void read(){
+        try{
+            while(!closed){
+                String[] batch = new String[BATCH_LINES];
+                int n = 0;
+                String line;
+                while(n < BATCH_LINES && null != (line = reader.readLine())){
+                    batch[n++] = line;
+                }
+                if(n > 0 && !put(new Batch(batch, n, reader.getOffset(), null))){
+                    return;
+                }
+                if(n < BATCH_LINES){
+                    put(END);
+                    return;
+                }
+            }
+        }catch (Throwable e){
+            // 任何异常都必须交给提交端, 否则提交端会一直等待
+            put(new Batch(null, 0, 0L, e));
+        }finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // 只读的文件关闭失败不影响已经读取的数据
+            }
+        }
+    }
+
+    private boolean put(Batch batch){
+        try {
+            while(!closed){
+                if(queue.offer(batch, OFFER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)){
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private boolean nextBatch(){
+        if(finished){
+            return false;
+        }
+        Batch batch;
+        try {
+            batch = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = true;
+            throw new RuntimeException("interrupted while waiting for file lines!", e);
+        }
+        if(null != batch.error){
+            finished = true;
+            Throwable error = batch.error;
+            if(error instanceof IOException){
+                throw new UncheckedIOException((IOException) error);
+            }
+            if(error instanceof Error){
+                throw (Error) error;
+            }
+            throw (RuntimeException) error;
+        }
+        if(batch == END){
+            finished = true;
+            return false;
+        }
+        lines = batch.lines;
+        size = batch.size;
+        index = 0;
+        readLines += size;
+        jobObserver.updateInputProgress(batch.endOffset, readLines);
+        return true;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if(index == size && !nextBatch()){
+            return false;
+        }
+        String line = lines[index];
+        lines[index++] = null;
+        action.accept(line);
+        return true;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * 停止读取线程, 未提交的预读数据被丢弃
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    /**
+     * 一批连续的行
+     */
+    private static final class Batch {
+        private final String[] lines;
+        private final int size;
+        // 最后一行之后在文件中的偏移量
+        private final long endOffset;
+        // 读取线程中的异常, 只可能是 IOException, RuntimeException 或 Error
+        private final Throwable error;
+
+        Batch(String[] lines, int size, long endOffset, Throwable error) {
+            this.lines = lines;
+            this.size = size;
+            this.endOffset = endOffset;
+            this.error = error;
+        }
+    }
+}
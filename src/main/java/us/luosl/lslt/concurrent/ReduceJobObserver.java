@@ -0,0 +1,109 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+
+/**
+ * 归约 job 的观察者
+ * 执行线程把任务结果累加到按线程分段的局部结果中, 不同线程之间几乎没有竞争;
+ * job 结束后局部结果只合并一次, 合并后的值作为 job 的结果
+ * @param <T> 任务结果类型
+ * @param <R> 归约结果类型
+ */
+public class ReduceJobObserver<T, R> extends JobObserver<T> {
+
+    private final Reducer<T, ?, R> reducer;
+    private final CompletionStage<R> resultStage;
+
+    protected <A> ReduceJobObserver(String jobName, Collector<? super T, A, R> collector) {
+        super(jobName);
+        this.reducer = new Reducer<>(collector);
+        this.resultStage = getCompletionStage().thenApply(summary -> reducer.finish());
+        setJobCallback(reducer::accumulate);
+    }
+
+    /**
+     * 获取 job 结果的 CompletionStage, 所有任务结束后以合并后的结果完成, 执行失败的任务不参与归约
+     * @return CompletionStage<R>
+     */
+    public CompletionStage<R> getResultStage() {
+        return resultStage;
+    }
+
+    /**
+     * 持有分段局部结果的归约器
+     * 局部结果按线程 id 的散列分段, 段数只与 CPU 核数有关, 与线程数及任务数无关:
+     * 每个任务独占一个虚拟线程时也不会为每个任务创建局部结果, 合并的开销固定;
+     * 固定线程池中不同线程落在同一段的概率很小, 段上的锁几乎没有竞争
+     * @param <T>
+     * @param <A>
+     * @param <R>
+     */
+    private static final class Reducer<T, A, R> {
+
+        private static final int STRIPES = stripes();
+
+        private final Collector<? super T, A, R> collector;
+        private final BiConsumer<A, ? super T> accumulator;
+        private final Partial<A>[] partials;
+
+        @SuppressWarnings("unchecked")
+        Reducer(Collector<? super T, A, R> collector) {
+            this.collector = collector;
+            this.accumulator = collector.accumulator();
+            this.partials = (Partial<A>[]) new Partial<?>[STRIPES];
+            for(int i = 0; i < STRIPES; i++){
+                partials[i] = new Partial<>();
+            }
+        }
+
+        private static int stripes(){
+            int n = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+            return Integer.highestOneBit(n - 1) << 1;
+        }
+
+        void accumulate(T t){
+            long id = Thread.currentThread().getId();
+            int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+            Partial<A> partial = partials[(h ^ (h >>> 16)) & (STRIPES - 1)];
+            synchronized (partial){
+                if(null == partial.container){
+                    partial.container = collector.supplier().get();
+                }
+                accumulator.accept(partial.container, t);
+            }
+        }
+
+        /**
+         * 合并所有局部结果, 只能在所有任务结束后调用一次
+         * @return R
+         */
+        @SuppressWarnings("unchecked")
+        R finish(){
+            A merged = null;
+            for(Partial<A> partial: partials){
+                A container;
+                synchronized (partial){
+                    container = partial.container;
+                    partial.container = null;
+                }
+                if(null != container){
+                    merged = null == merged ? container : collector.combiner().apply(merged, container);
+                }
+            }
+            if(null == merged){
+                merged = collector.supplier().get();
+            }
+            if(collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)){
+                return (R) merged;
+            }
+            return collector.finisher().apply(merged);
+        }
+    }
+
+    private static final class Partial<A> {
+        // 该段的第一个结果到达时创建
+        private A container;
+    }
+}
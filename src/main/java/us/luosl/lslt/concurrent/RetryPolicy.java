@@ -0,0 +1,132 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 任务失败时的重试策略
+ * 重试按指数退避并带随机抖动, 等待期间任务交给定时器而不占用工作线程;
+ * 只有分类器判断为可重试的异常才会重试, 达到最大尝试次数后按异常计数
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(10);
+    private double multiplier = 2D;
+    private double jitter = 0.5D;
+    private Predicate<? super Throwable> retryOn = e -> e instanceof Exception;
+
+    private RetryPolicy(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 创建一个重试策略, 默认退避从 100 毫秒开始每次翻倍, 最长 10 秒, 抖动 50%, 重试所有 Exception
+     * @param maxAttempts 最多尝试次数, 包含第一次执行
+     * @return RetryPolicy
+     */
+    public static RetryPolicy of(int maxAttempts){
+        if(maxAttempts <= 0){
+            throw new IllegalArgumentException("maxAttempts must be positive!");
+        }
+        return new RetryPolicy(maxAttempts);
+    }
+
+    /**
+     * 设置退避时间
+     * @param initialBackoff 第一次重试前的等待时间
+     * @param maxBackoff 等待时间的上限
+     * @param unit unit
+     * @return RetryPolicy
+     */
+    public RetryPolicy setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit){
+        if(initialBackoff < 0 || maxBackoff < initialBackoff){
+            throw new IllegalArgumentException("backoff must satisfy 0 <= initialBackoff <= maxBackoff!");
+        }
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+        return this;
+    }
+
+    /**
+     * 设置每次重试后等待时间的倍数
+     * @param multiplier 不小于 1
+     * @return RetryPolicy
+     */
+    public RetryPolicy setMultiplier(double multiplier){
+        if(multiplier < 1D){
+            throw new IllegalArgumentException("multiplier must not be less than 1!");
+        }
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * 设置随机抖动的比例, 实际等待时间在 [退避 * (1 - jitter), 退避] 之间均匀分布,
+     * 避免同时失败的任务在同一时刻重试
+     * @param jitter 0 到 1 之间, 0 表示不抖动
+     * @return RetryPolicy
+     */
+    public RetryPolicy setJitter(double jitter){
+        if(jitter < 0D || jitter > 1D){
+            throw new IllegalArgumentException("jitter must be between 0 and 1!");
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * 设置判断异常是否可重试的分类器
+     * @param retryOn retryOn
+     * @return RetryPolicy
+     */
+    public RetryPolicy retryOn(Predicate<? super Throwable> retryOn){
+        this.retryOn = retryOn;
+        return this;
+    }
+
+    /**
+     * 只重试指定类型(含子类)的异常
+     * @param types types
+     * @return RetryPolicy
+     */
+    @SafeVarargs
+    public final RetryPolicy retryOn(Class<? extends Throwable>... types){
+        return retryOn(e -> {
+            for(Class<? extends Throwable> type: types){
+                if(type.isInstance(e)) return true;
+            }
+            return false;
+        });
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 已经尝试 attempts 次并以异常 e 失败后是否还应重试
+     * @param e e
+     * @param attempts 已经尝试的次数
+     * @return boolean
+     */
+    public boolean shouldRetry(Throwable e, int attempts){
+        return attempts < maxAttempts && retryOn.test(e);
+    }
+
+    /**
+     * 第 attempts 次尝试失败后到下一次重试的等待纳秒数
+     * @param attempts 已经尝试的次数, 从 1 开始
+     * @return long
+     */
+    public long backoffNanos(int attempts){
+        double backoff = initialBackoffNanos * Math.pow(multiplier, Math.max(0, attempts - 1));
+        long capped = (long) Math.min(backoff, (double) maxBackoffNanos);
+        if(jitter == 0D || capped == 0L){
+            return capped;
+        }
+        return capped - (long) (capped * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+}
@@ -0,0 +1,35 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有 job 共享的定时调度器, 用于统计输出等周期性的轻量工作
+ * 只使用一个守护线程, 调度的任务不应执行耗时操作
+ */
+final class SharedScheduler {
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+    private SharedScheduler() {
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler(){
+        AtomicInteger number = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, String.format("lslt-scheduler-%d", number.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        };
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        // 取消的任务立即从队列中移除, 避免大量短 job 的统计任务堆积
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    static ScheduledExecutorService get(){
+        return SCHEDULER;
+    }
+}
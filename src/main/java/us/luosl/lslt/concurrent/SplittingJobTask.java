@@ -0,0 +1,94 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * 可以自我拆分的 job 任务
+ * 执行时先把元素数超过阈值的 Spliterator 不断对半拆分, 拆出的部分作为新任务 fork 到当前工作线程的队列中,
+ * 空闲的工作线程会从队列尾部窃取这些任务; 剩余的元素在当前线程执行。拆出的任务与原任务计入同一个 JobObserver
+ * @param <I> 元素类型
+ * @param <C> 处理结果类型
+ */
+class SplittingJobTask<I, C> implements JobRunnable, Consumer<I> {
+
+    private final Spliterator<I> items;
+    private final JobFunction<? super I, ? extends C> fn;
+    private final JobObserver<C> jobObserver;
+    private final long threshold;
+    private final Executor forkExecutor;
+    private final boolean creditHeld;
+    // 元素总数未知时在执行到每个元素时才计入提交数
+    private final boolean countOnVisit;
+    private final long submitNanos = System.nanoTime();
+
+    SplittingJobTask(Spliterator<I> items, JobFunction<? super I, ? extends C> fn, JobObserver<C> jobObserver,
+                     long threshold, Executor forkExecutor, boolean creditHeld, boolean countOnVisit) {
+        this.items = items;
+        this.fn = fn;
+        this.jobObserver = jobObserver;
+        this.threshold = Math.max(1L, threshold);
+        this.forkExecutor = forkExecutor;
+        this.creditHeld = creditHeld;
+        this.countOnVisit = countOnVisit;
+    }
+
+    @Override
+    public JobObserver<?> getJobObserver() {
+        return jobObserver;
+    }
+
+    @Override
+    public void run() {
+        jobObserver.getQueueWaitHistogram().record(System.nanoTime() - submitNanos);
+        try {
+            Spliterator<I> prefix;
+            while(items.estimateSize() > threshold && null != (prefix = items.trySplit())){
+                fork(prefix);
+            }
+            items.forEachRemaining(this);
+        } finally {
+            if(creditHeld){
+                jobObserver.releaseCredit();
+            }
+            jobObserver.taskDone();
+        }
+    }
+
+    @Override
+    public void abandon() {
+        // 元素总数未知时尚未计入提交数, 无需计为取消
+        if(!countOnVisit){
+            long size = Math.max(0L, items.getExactSizeIfKnown());
+            jobObserver.addStartedCount(size);
+            jobObserver.addCancelledCount(size);
+        }
+        if(creditHeld){
+            jobObserver.releaseCredit();
+        }
+        jobObserver.taskDone();
+    }
+
+    private void fork(Spliterator<I> prefix){
+        // 当前任务尚未结束, 登记一定成功
+        jobObserver.taskSubmitted();
+        try {
+            forkExecutor.execute(new SplittingJobTask<>(prefix, fn, jobObserver, threshold, forkExecutor,
+                    false, countOnVisit));
+        } catch (RejectedExecutionException e) {
+            // 无法 fork 时在当前线程执行
+            jobObserver.taskDone();
+            prefix.forEachRemaining(this);
+        }
+    }
+
+    @Override
+    public void accept(I item) {
+        if(countOnVisit){
+            jobObserver.incrSubmitCount();
+        }
+        JobTask.runItem(jobObserver, item, fn);
+    }
+}
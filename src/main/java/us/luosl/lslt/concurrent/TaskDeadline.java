@@ -0,0 +1,115 @@
+package us.luosl.lslt.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个 JobTask 的执行期限, 由共享的时间轮计时
+ * 执行线程每结束一个元素就通过 CAS 推进进度, 到期时时间轮线程通过 CAS 抢占剩余的元素:
+ * 抢占成功则中断执行线程, 把剩余元素计为超时并代替任务归还许可、结束任务, 使 job 不会被卡住的任务拖住;
+ * 执行线程之后得到的结果全部丢弃
+ */
+final class TaskDeadline implements Runnable {
+
+    // 非负值为执行线程下一个要结束的元素下标
+    private static final int TIMING_OUT = -1;
+    private static final int TIMED_OUT = -2;
+    private static final int DONE = -3;
+
+    private final JobObserver<?> jobObserver;
+    private final int size;
+    private final boolean creditHeld;
+    private final long timeoutNanos;
+    private final Thread runner = Thread.currentThread();
+    private final AtomicInteger progress = new AtomicInteger();
+    private HashedTimerWheel.Timeout timeout;
+
+    private TaskDeadline(JobObserver<?> jobObserver, int size, boolean creditHeld, long timeoutNanos) {
+        this.jobObserver = jobObserver;
+        this.size = size;
+        this.creditHeld = creditHeld;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * 在执行线程中为任务设置期限
+     * @param jobObserver jobObserver
+     * @param size 任务包含的元素数量
+     * @param creditHeld 任务是否持有在途许可
+     * @param timeoutNanos 整个任务的期限
+     * @return TaskDeadline
+     */
+    static TaskDeadline arm(JobObserver<?> jobObserver, int size, boolean creditHeld, long timeoutNanos){
+        TaskDeadline deadline = new TaskDeadline(jobObserver, size, creditHeld, timeoutNanos);
+        deadline.timeout = HashedTimerWheel.shared().newTimeout(deadline, timeoutNanos, TimeUnit.NANOSECONDS);
+        return deadline;
+    }
+
+    /**
+     * 执行线程结束一个元素, 返回 false 表示任务已经超时, 该元素已被计为超时
+     * @return boolean
+     */
+    boolean claim(){
+        int current = progress.get();
+        return current >= 0 && progress.compareAndSet(current, current + 1);
+    }
+
+    boolean isTimedOut(){
+        int current = progress.get();
+        return current == TIMING_OUT || current == TIMED_OUT;
+    }
+
+    /**
+     * 执行线程结束任务时调用, 返回 false 表示任务已经超时, 许可与任务计数已由超时处理归还
+     * @return boolean
+     */
+    boolean finish(){
+        timeout.cancel();
+        int current;
+        while((current = progress.get()) >= 0){
+            if(progress.compareAndSet(current, DONE)){
+                return true;
+            }
+        }
+        if(current == DONE){
+            return true;
+        }
+        while(progress.get() == TIMING_OUT){
+            Thread.yield();
+        }
+        // 清除超时时发出的中断, 避免影响线程池线程执行后续任务
+        Thread.interrupted();
+        return false;
+    }
+
+    /**
+     * 到期, 在时间轮线程中执行
+     */
+    @Override
+    public void run() {
+        int current;
+        while((current = progress.get()) >= 0 && current < size){
+            if(progress.compareAndSet(current, TIMING_OUT)){
+                runner.interrupt();
+                progress.set(TIMED_OUT);
+                expire(size - current);
+                return;
+            }
+        }
+    }
+
+    private void expire(int remaining){
+        TimeoutException e = new TimeoutException(String.format("[%s] task timed out after %d ms",
+                jobObserver.getJobName(), TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+        jobObserver.addTimeoutCount(remaining);
+        jobObserver.addError(e);
+        for(int i = 0; i < remaining; i++){
+            jobObserver.fireTaskComplete(null, e);
+        }
+        if(creditHeld){
+            jobObserver.releaseCredit();
+        }
+        jobObserver.taskDone();
+    }
+}
@@ -0,0 +1,51 @@
+package us.luosl.lslt.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程支持
+ * 项目以 Java 8 为编译目标, 因此通过 MethodHandle 在运行时查找 Executors.newVirtualThreadPerTaskExecutor,
+ * 运行在 Java 21 以下的环境中时视为不支持
+ */
+final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private static MethodHandle lookup(){
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static boolean isSupported(){
+        return null != NEW_VIRTUAL_THREAD_EXECUTOR;
+    }
+
+    /**
+     * 创建一个为每个任务启动一个虚拟线程的 ExecutorService
+     * @return ExecutorService
+     * @throws UnsupportedOperationException 当前运行环境不支持虚拟线程
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(){
+        if(!isSupported()){
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
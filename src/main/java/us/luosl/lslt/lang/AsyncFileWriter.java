@@ -0,0 +1,775 @@
+package us.luosl.lslt.lang;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程写同一个文件的异步写入器
+ * 每个写线程把记录编码到自己的缓冲区中, 缓冲区写满后交给专属的 IO 线程并换上一个空闲缓冲区继续写入,
+ * IO 线程把排队的多个缓冲区合并为一次 FileChannel 写入, 写线程之间不互相等待, 也不执行任何 IO;
+ * 排队的缓冲区数量有上限, 磁盘跟不上时写线程在交出缓冲区时等待。
+ * 无序模式下同一线程写入的记录保持顺序, 不同线程之间的记录以缓冲区为单位交错, 单条记录不会被拆开;
+ * 有序模式下每条记录带有从 0 开始连续的序号, 没有输出的序号需要调用 {@link #skip(long)}:
+ * 写线程把序号连续的记录编码到自己的缓冲区中, 序号不连续或缓冲区写满时才把这一段交给 IO 线程,
+ * IO 线程按段的起始序号重新排序后写出, 因此排队与排序的开销按段而不是按行计算
+ */
+public class AsyncFileWriter implements Closeable {
+
+    /**
+     * 将数据刷到磁盘(fsync)的时机
+     */
+    public enum SyncPolicy {
+        /**
+         * 只交给操作系统, 不主动刷盘
+         */
+        NONE,
+        /**
+         * 关闭时刷盘
+         */
+        ON_CLOSE,
+        /**
+         * 每次合并写入后刷盘
+         */
+        EVERY_WRITE,
+        /**
+         * 按固定间隔刷盘, 关闭时也会刷盘
+         */
+        INTERVAL
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    // 一次合并写入的最多缓冲区数
+    private static final int MAX_GATHER = 16;
+    // 有序段的数据少于缓冲区的该比例时复制后交出, 写线程继续使用原缓冲区, 避免零散的短段各占一个缓冲区
+    private static final int SMALL_RUN_DIVISOR = 4;
+
+    private final File file;
+    private Charset charset = StandardCharsets.UTF_8;
+    private boolean append;
+    private boolean ordered;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private SyncPolicy syncPolicy = SyncPolicy.ON_CLOSE;
+    private long syncIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    private long flushIntervalMillis = 1000L;
+
+    private FileChannel channel;
+    // 写满的缓冲区, 有序段与 flush/close 请求
+    private BlockingQueue<Object> queue;
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final List<ThreadBuffer> threadBuffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ThreadBuffer> localBuffer = ThreadLocal.withInitial(this::register);
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private volatile long writtenBytes;
+    // 以下字段只由 IO 线程使用
+    // 等待前面的序号的有序段: 起始序号 -> pendingRuns 中的位置
+    private final LongLongMap pendingIndex = new LongLongMap();
+    private OrderedRun[] pendingRuns = new OrderedRun[16];
+    private final IntList freeSlots = new IntList();
+    private int pendingSlots;
+    private long nextSequence;
+    private long lastSyncNanos;
+    private boolean dirty;
+
+    private AsyncFileWriter(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 写入指定文件, 调用 {@link #open()} 后开始写入
+     * @param file file
+     * @return AsyncFileWriter
+     */
+    public static AsyncFileWriter of(File file){
+        assert null != file;
+        return new AsyncFileWriter(file);
+    }
+
+    /**
+     * 设置字符集
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @return AsyncFileWriter
+     * @throws IOException 字符集不支持
+     */
+    public AsyncFileWriter setCharset(String charset) throws IOException {
+        checkNotOpened();
+        this.charset = FileUtils.lineCharset(charset);
+        return this;
+    }
+
+    /**
+     * 是否追加到已有文件的末尾, 默认清空已有文件
+     * @param append append
+     * @return AsyncFileWriter
+     */
+    public AsyncFileWriter setAppend(boolean append){
+        checkNotOpened();
+        this.append = append;
+        return this;
+    }
+
+    /**
+     * 是否按序号排序后写出, 有序模式下只能使用 {@link #writeLine(long, CharSequence)} 与 {@link #skip(long)}
+     * @param ordered ordered
+     * @return AsyncFileWriter
+     */
+    public AsyncFileWriter setOrdered(boolean ordered){
+        checkNotOpened();
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * 设置每个缓冲区的字节数
+     * @param bufferSize bufferSize
+     * @return AsyncFileWriter
+     */
+    public AsyncFileWriter setBufferSize(int bufferSize){
+        checkNotOpened();
+        if(bufferSize < 1024){
+            throw new IllegalArgumentException("bufferSize must not be less than 1024!");
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * 设置最多排队等待写入的缓冲区数
+     * @param queueCapacity queueCapacity
+     * @return AsyncFileWriter
+     */
+    public AsyncFileWriter setQueueCapacity(int queueCapacity){
+        checkNotOpened();
+        if(queueCapacity <= 0){
+            throw new IllegalArgumentException("queueCapacity must be greater than 0!");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public AsyncFileWriter setSyncPolicy(SyncPolicy syncPolicy){
+        checkNotOpened();
+        this.syncPolicy = syncPolicy;
+        return this;
+    }
+
+    /**
+     * 设置 {@link SyncPolicy#INTERVAL} 的刷盘间隔
+     * @param interval interval
+     * @param unit unit
+     * @return AsyncFileWriter
+     */
+    public AsyncFileWriter setSyncInterval(long interval, TimeUnit unit){
+        checkNotOpened();
+        this.syncIntervalNanos = Math.max(1L, unit.toNanos(interval));
+        return this;
+    }
+
+    /**
+     * 设置写线程缓冲区中的零散数据最多停留多久, IO 线程空闲时按该间隔收集并写出
+     * @param interval interval
+     * @param unit unit
+     * @return AsyncFileWriter
+     */
+    public AsyncFileWriter setFlushInterval(long interval, TimeUnit unit){
+        checkNotOpened();
+        this.flushIntervalMillis = Math.max(1L, unit.toMillis(interval));
+        return this;
+    }
+
+    private void checkNotOpened(){
+        if(null != channel){
+            throw new RuntimeException("You cannot change the writer after open!");
+        }
+    }
+
+    /**
+     * 打开文件并启动 IO 线程
+     * @return AsyncFileWriter
+     * @throws IOException 文件打开失败
+     */
+    public AsyncFileWriter open() throws IOException {
+        checkNotOpened();
+        channel = append ?
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND) :
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        lastSyncNanos = System.nanoTime();
+        Thread thread = new Thread(this::run, String.format("lslt-async-writer-%s", file.getName()));
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * 写入一段文本, 可以被多个线程同时调用
+     * @param text text
+     */
+    public void write(CharSequence text){
+        append(text, false);
+    }
+
+    /**
+     * 写入一行, 可以被多个线程同时调用
+     * @param line 不包含换行符的行
+     */
+    public void writeLine(CharSequence line){
+        append(line, true);
+    }
+
+    /**
+     * 有序模式下写入序号为 sequence 的一行, 可以被多个线程同时调用, 每个序号只能写入或跳过一次
+     * 在此之前的序号全部写入或跳过后, 该行才会被写出; 乱序等待的行保存在内存中。
+     * 同一线程写入连续的序号时效率最高, 例如每个线程处理一段连续的元素
+     * @param sequence 从 0 开始的序号
+     * @param line 不包含换行符的行
+     */
+    public void writeLine(long sequence, CharSequence line){
+        appendOrdered(sequence, line);
+    }
+
+    /**
+     * 有序模式下跳过一个没有输出的序号
+     * @param sequence sequence
+     */
+    public void skip(long sequence){
+        appendOrdered(sequence, null);
+    }
+
+    private void checkOrdered(boolean expected){
+        checkWritable();
+        if(ordered != expected){
+            throw new RuntimeException(ordered ? "ordered writer requires a sequence number!" :
+                    "sequence numbers are only allowed in ordered mode!");
+        }
+    }
+
+    private void checkWritable(){
+        if(null == channel || closed){
+            throw new RuntimeException("writer is not open!");
+        }
+        checkFailure();
+    }
+
+    private void checkFailure(){
+        Throwable e = failure;
+        if(null != e){
+            throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    private CharsetEncoder newEncoder(){
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private byte[] encodeLine(CharSequence line){
+        ByteBuffer encoded = charset.encode(CharBuffer.wrap(line));
+        byte[] bytes = new byte[encoded.remaining() + 1];
+        encoded.get(bytes, 0, bytes.length - 1);
+        bytes[bytes.length - 1] = '\n';
+        return bytes;
+    }
+
+    private ThreadBuffer register(){
+        ThreadBuffer threadBuffer = new ThreadBuffer(newEncoder(), takeFreeBuffer());
+        threadBuffers.add(threadBuffer);
+        return threadBuffer;
+    }
+
+    private ByteBuffer takeFreeBuffer(){
+        ByteBuffer buffer = freeBuffers.poll();
+        return null == buffer ? ByteBuffer.allocateDirect(bufferSize) : buffer;
+    }
+
+    /**
+     * 编码到当前线程的缓冲区, 缓冲区放不下时交出缓冲区并换一个空的, 超过缓冲区大小的记录单独交出
+     */
+    private void append(CharSequence text, boolean newline){
+        checkOrdered(false);
+        ThreadBuffer threadBuffer = localBuffer.get();
+        ByteBuffer full = null;
+        ByteBuffer oversize = null;
+        synchronized (threadBuffer){
+            if(!threadBuffer.encode(text, newline)){
+                if(threadBuffer.buffer.position() > 0){
+                    full = threadBuffer.buffer;
+                    full.flip();
+                    threadBuffer.buffer = takeFreeBuffer();
+                }
+                if(!threadBuffer.encode(text, newline)){
+                    oversize = newline ? ByteBuffer.wrap(encodeLine(text)) : charset.encode(CharBuffer.wrap(text));
+                }
+            }
+            // 交出缓冲区之前不允许 IO 线程收集该线程的数据, 否则后写的数据可能先于先写的数据写出
+            threadBuffer.handingOff = null != full || null != oversize;
+        }
+        if(threadBuffer.handingOff){
+            try {
+                if(null != full){
+                    enqueue(full);
+                }
+                if(null != oversize){
+                    enqueue(oversize);
+                }
+            } finally {
+                threadBuffer.handingOff = false;
+            }
+        }
+    }
+
+    /**
+     * 把记录追加到当前线程的有序段, 序号与段不连续或缓冲区放不下时先交出当前段
+     * @param line 为 null 时跳过该序号
+     */
+    private void appendOrdered(long sequence, CharSequence line){
+        checkOrdered(true);
+        if(sequence < 0){
+            throw new IllegalArgumentException("sequence must not be negative!");
+        }
+        ThreadBuffer threadBuffer = localBuffer.get();
+        OrderedRun run = null;
+        OrderedRun oversize = null;
+        synchronized (threadBuffer){
+            if(threadBuffer.runCount > 0 && sequence != threadBuffer.runStart + threadBuffer.runCount){
+                run = takeRun(threadBuffer);
+            }
+            if(null != line && !threadBuffer.encode(line, true)){
+                if(threadBuffer.runCount > 0){
+                    run = takeRun(threadBuffer);
+                }
+                if(!threadBuffer.encode(line, true)){
+                    oversize = new OrderedRun(sequence, 1, ByteBuffer.wrap(encodeLine(line)));
+                }
+            }
+            if(null == oversize){
+                if(threadBuffer.runCount == 0){
+                    threadBuffer.runStart = sequence;
+                }
+                threadBuffer.runCount++;
+            }
+            threadBuffer.handingOff = null != run || null != oversize;
+        }
+        if(threadBuffer.handingOff){
+            try {
+                if(null != run){
+                    enqueue(run);
+                }
+                if(null != oversize){
+                    enqueue(oversize);
+                }
+            } finally {
+                threadBuffer.handingOff = false;
+            }
+        }
+    }
+
+    /**
+     * 取出线程缓冲区中的有序段, 调用方持有 threadBuffer 的锁
+     */
+    private OrderedRun takeRun(ThreadBuffer threadBuffer){
+        ByteBuffer buffer = threadBuffer.buffer;
+        ByteBuffer bytes;
+        buffer.flip();
+        if(buffer.remaining() < bufferSize / SMALL_RUN_DIVISOR){
+            bytes = ByteBuffer.allocate(buffer.remaining());
+            bytes.put(buffer).flip();
+            buffer.clear();
+        }else{
+            bytes = buffer;
+            threadBuffer.buffer = takeFreeBuffer();
+        }
+        OrderedRun run = new OrderedRun(threadBuffer.runStart, threadBuffer.runCount, bytes);
+        threadBuffer.runCount = 0;
+        return run;
+    }
+
+    private void enqueue(Object item){
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("interrupted while waiting for the writer!"));
+        }
+    }
+
+    /**
+     * 把此前写入的数据全部交给操作系统, 是否刷盘取决于 {@link SyncPolicy}; 与之并发的写入不保证包含在内
+     * @throws IOException 写入失败
+     */
+    public void flush() throws IOException {
+        if(null == channel || closed){
+            throw new IOException("writer is not open!");
+        }
+        awaitBarrier(new Barrier(false));
+    }
+
+    /**
+     * 写出所有数据并关闭文件, 调用前应确保所有写线程已经结束写入
+     * 有序模式下仍有序号缺失时, 等待中的行按序号写出后抛出异常
+     * @throws IOException 写入失败或有序模式下序号不连续
+     */
+    @Override
+    public void close() throws IOException {
+        if(null == channel || closed){
+            return;
+        }
+        closed = true;
+        awaitBarrier(new Barrier(true));
+    }
+
+    private void awaitBarrier(Barrier barrier) throws IOException {
+        try {
+            queue.put(barrier);
+            barrier.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the writer!");
+        }
+        Throwable e = failure;
+        if(null != e){
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    /**
+     * 已经写入文件的字节数
+     * @return long
+     */
+    public long getWrittenBytes(){
+        return writtenBytes;
+    }
+
+    /**
+     * IO 线程
+     */
+    private void run(){
+        List<ByteBuffer> chunks = new ArrayList<>();
+        Barrier barrier = null;
+        try {
+            while(true){
+                Object item = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if(null == item){
+                    collect(chunks);
+                }
+                while(null != item){
+                    if(item instanceof ByteBuffer){
+                        chunks.add((ByteBuffer) item);
+                    }else if(item instanceof OrderedRun){
+                        accept((OrderedRun) item, chunks);
+                    }else{
+                        barrier = (Barrier) item;
+                        collect(chunks);
+                        if(barrier.close){
+                            closeChannel(chunks);
+                            barrier.done.countDown();
+                            return;
+                        }
+                        writeChunks(chunks);
+                        barrier.done.countDown();
+                        barrier = null;
+                    }
+                    if(chunks.size() >= MAX_GATHER){
+                        writeChunks(chunks);
+                    }
+                    item = queue.poll();
+                }
+                writeChunks(chunks);
+                if(syncPolicy == SyncPolicy.INTERVAL && System.nanoTime() - lastSyncNanos >= syncIntervalNanos){
+                    sync();
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+            if(null != barrier){
+                barrier.done.countDown();
+                if(barrier.close){
+                    release();
+                    return;
+                }
+            }
+            discard();
+        }
+    }
+
+    /**
+     * 写入失败后丢弃之后的数据, 使写线程与等待者不被阻塞
+     */
+    private void discard(){
+        while(true){
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if(item instanceof Barrier){
+                ((Barrier) item).done.countDown();
+                if(((Barrier) item).close){
+                    release();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 收集所有写线程缓冲区中的零散数据, 有序模式下收集各线程未交出的有序段
+     */
+    private void collect(List<ByteBuffer> chunks) throws IOException {
+        for(ThreadBuffer threadBuffer : threadBuffers){
+            OrderedRun run = null;
+            synchronized (threadBuffer){
+                if(threadBuffer.handingOff){
+                    continue;
+                }
+                if(ordered){
+                    if(threadBuffer.runCount == 0){
+                        continue;
+                    }
+                    run = takeRun(threadBuffer);
+                }else{
+                    if(threadBuffer.buffer.position() == 0){
+                        continue;
+                    }
+                    ByteBuffer buffer = threadBuffer.buffer;
+                    buffer.flip();
+                    threadBuffer.buffer = takeFreeBuffer();
+                    chunks.add(buffer);
+                }
+            }
+            if(null != run){
+                accept(run, chunks);
+            }
+            if(chunks.size() >= MAX_GATHER){
+                writeChunks(chunks);
+            }
+        }
+    }
+
+    /**
+     * 接收一个有序段, 轮到它时连同之后已经到达的段一起写出, 否则按起始序号暂存
+     */
+    private void accept(OrderedRun run, List<ByteBuffer> chunks) throws IOException {
+        if(run.start < nextSequence || pendingIndex.containsKey(run.start)){
+            throw new IOException(String.format("duplicate sequence %d!", run.start));
+        }
+        if(run.start > nextSequence){
+            park(run);
+            return;
+        }
+        writeRun(run, chunks);
+        long slot;
+        while((slot = pendingIndex.get(nextSequence, -1L)) >= 0){
+            pendingIndex.remove(nextSequence);
+            OrderedRun next = pendingRuns[(int) slot];
+            pendingRuns[(int) slot] = null;
+            freeSlots.add((int) slot);
+            writeRun(next, chunks);
+        }
+    }
+
+    private void park(OrderedRun run){
+        int slot;
+        if(freeSlots.isEmpty()){
+            if(pendingSlots == pendingRuns.length){
+                pendingRuns = Arrays.copyOf(pendingRuns, pendingRuns.length << 1);
+            }
+            slot = pendingSlots++;
+        }else{
+            slot = freeSlots.removeAt(freeSlots.size() - 1);
+        }
+        pendingRuns[slot] = run;
+        pendingIndex.put(run.start, slot);
+    }
+
+    private void writeRun(OrderedRun run, List<ByteBuffer> chunks) throws IOException {
+        nextSequence = run.start + run.count;
+        if(run.bytes.hasRemaining()){
+            chunks.add(run.bytes);
+        }else{
+            recycle(run.bytes);
+        }
+        if(chunks.size() >= MAX_GATHER){
+            writeChunks(chunks);
+        }
+    }
+
+    private void recycle(ByteBuffer buffer){
+        if(buffer.isDirect() && buffer.capacity() == bufferSize){
+            buffer.clear();
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * 合并写入, 写完的缓冲区回到空闲队列
+     */
+    private void writeChunks(List<ByteBuffer> chunks) throws IOException {
+        if(chunks.isEmpty()){
+            return;
+        }
+        ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for(ByteBuffer buffer : buffers){
+            remaining += buffer.remaining();
+        }
+        long total = remaining;
+        while(remaining > 0){
+            remaining -= channel.write(buffers);
+        }
+        writtenBytes += total;
+        dirty = true;
+        for(ByteBuffer buffer : buffers){
+            recycle(buffer);
+        }
+        chunks.clear();
+        if(syncPolicy == SyncPolicy.EVERY_WRITE){
+            sync();
+        }
+    }
+
+    private void sync() throws IOException {
+        if(dirty){
+            channel.force(false);
+            dirty = false;
+        }
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void closeChannel(List<ByteBuffer> chunks) throws IOException {
+        IOException gap = null;
+        if(!pendingIndex.isEmpty()){
+            List<OrderedRun> runs = new ArrayList<>(pendingIndex.size());
+            long records = 0;
+            for(OrderedRun run : pendingRuns){
+                if(null != run){
+                    runs.add(run);
+                    records += run.count;
+                }
+            }
+            gap = new IOException(String.format("missing sequence %d, %d records written out of order!",
+                    nextSequence, records));
+            runs.sort(Comparator.comparingLong(run -> run.start));
+            for(OrderedRun run : runs){
+                writeRun(run, chunks);
+            }
+            pendingIndex.clear();
+        }
+        writeChunks(chunks);
+        if(syncPolicy != SyncPolicy.NONE){
+            sync();
+        }
+        if(null != gap){
+            throw gap;
+        }
+        release();
+    }
+
+    private void release(){
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if(null == failure){
+                failure = e;
+            }
+        }
+        for(ThreadBuffer threadBuffer : threadBuffers){
+            synchronized (threadBuffer){
+                threadBuffer.buffer = null;
+            }
+        }
+        threadBuffers.clear();
+        freeBuffers.clear();
+    }
+
+    /**
+     * 一个写线程的缓冲区与编码器
+     */
+    private static final class ThreadBuffer {
+        private final CharsetEncoder encoder;
+        private ByteBuffer buffer;
+        private volatile boolean handingOff;
+        // 有序模式下缓冲区中连续序号段的起始序号与记录数
+        private long runStart;
+        private int runCount;
+
+        ThreadBuffer(CharsetEncoder encoder, ByteBuffer buffer) {
+            this.encoder = encoder;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 编码到缓冲区, 放不下时恢复缓冲区并返回 false
+         */
+        boolean encode(CharSequence text, boolean newline){
+            int mark = buffer.position();
+            encoder.reset();
+            CoderResult result = encoder.encode(CharBuffer.wrap(text), buffer, true);
+            if(!result.isOverflow()){
+                result = encoder.flush(buffer);
+            }
+            if(result.isOverflow() || (newline && !buffer.hasRemaining())){
+                buffer.position(mark);
+                return false;
+            }
+            if(newline){
+                buffer.put((byte) '\n');
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 有序模式下序号连续的一段记录, 跳过的序号计入记录数但没有数据
+     */
+    private static final class OrderedRun {
+        private final long start;
+        private final int count;
+        private final ByteBuffer bytes;
+
+        OrderedRun(long start, int count, ByteBuffer bytes) {
+            this.start = start;
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * flush 或 close 请求, IO 线程处理完之前的数据后通知等待者
+     */
+    private static final class Barrier {
+        private final boolean close;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        Barrier(boolean close) {
+            this.close = close;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package us.luosl.lslt.lang;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 按单字节分隔符依次取出字段的可复用分词器, 取出的字段与数值解析都不创建对象
+ * 语义与 {@code String.split} 保留末尾空字段时相同: 空行为 1 个空字段, 相邻的分隔符之间为空字段
+ */
+public final class ByteFieldTokenizer {
+
+    private final ByteSlice field = new ByteSlice();
+    private ByteSlice line;
+    private byte delimiter;
+    private int position;
+    private boolean exhausted = true;
+
+    /**
+     * 开始对一行分词
+     * @param line line
+     * @param delimiter 分隔符
+     * @return ByteFieldTokenizer
+     */
+    public ByteFieldTokenizer reset(ByteSlice line, byte delimiter){
+        this.line = line;
+        this.delimiter = delimiter;
+        this.position = 0;
+        this.exhausted = false;
+        return this;
+    }
+
+    public boolean hasNext(){
+        return !exhausted;
+    }
+
+    /**
+     * 下一个字段, 返回的对象在下一次调用时被复用
+     * @return ByteSlice
+     */
+    public ByteSlice next(){
+        if(exhausted){
+            throw new NoSuchElementException();
+        }
+        int end = line.indexOf(delimiter, position);
+        if(end < 0){
+            end = line.length();
+            exhausted = true;
+        }
+        line.slice(position, end, field);
+        position = end + 1;
+        return field;
+    }
+
+    /**
+     * 跳过下一个字段
+     */
+    public void skip(){
+        next();
+    }
+
+    public int nextInt(){
+        return next().parseInt();
+    }
+
+    public long nextLong(){
+        return next().parseLong();
+    }
+}
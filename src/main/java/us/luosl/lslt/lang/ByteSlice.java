@@ -0,0 +1,269 @@
+package us.luosl.lslt.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 字节数组中一段区间的可复用视图, 用于在不创建 String 的情况下处理行与字段
+ * 作为 CharSequence 时每个字节对应一个字符, 只对 ASCII 内容有意义; 需要完整文本时调用 {@link #toString()} 按字符集解码。
+ * 视图指向的数据通常属于读取器的缓冲区, 只在当次回调中有效, 需要保留时应调用 toString 或 {@link #copy()}
+ */
+public final class ByteSlice implements CharSequence {
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+    private Charset charset;
+
+    public ByteSlice() {
+        this(new byte[0], 0, 0, StandardCharsets.UTF_8);
+    }
+
+    public ByteSlice(byte[] bytes, int offset, int length, Charset charset) {
+        set(bytes, offset, length);
+        this.charset = charset;
+    }
+
+    /**
+     * 指向新的区间
+     * @param bytes bytes
+     * @param offset offset
+     * @param length length
+     * @return ByteSlice
+     */
+    public ByteSlice set(byte[] bytes, int offset, int length){
+        if(offset < 0 || length < 0 || offset + length > bytes.length){
+            throw new IndexOutOfBoundsException(String.format("offset: %d, length: %d, size: %d",
+                    offset, length, bytes.length));
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public ByteSlice setCharset(Charset charset){
+        this.charset = charset;
+        return this;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public byte[] array(){
+        return bytes;
+    }
+
+    public int offset(){
+        return offset;
+    }
+
+    /**
+     * 字节数
+     * @return int
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty(){
+        return length == 0;
+    }
+
+    public byte byteAt(int index){
+        checkIndex(index);
+        return bytes[offset + index];
+    }
+
+    /**
+     * 第 index 个字节对应的字符, 只对 ASCII 内容有意义
+     * @param index index
+     * @return char
+     */
+    @Override
+    public char charAt(int index) {
+        return (char) (byteAt(index) & 0xFF);
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= length){
+            throw new IndexOutOfBoundsException(String.format("index: %d, length: %d", index, length));
+        }
+    }
+
+    /**
+     * 返回一个新的子区间视图, 需要复用对象时使用 {@link #slice(int, int, ByteSlice)}
+     * @param start start
+     * @param end end
+     * @return CharSequence
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return slice(start, end, new ByteSlice());
+    }
+
+    /**
+     * 让 target 指向 [start, end) 子区间
+     * @param start start
+     * @param end end
+     * @param target target
+     * @return target
+     */
+    public ByteSlice slice(int start, int end, ByteSlice target){
+        if(start < 0 || end > length || start > end){
+            throw new IndexOutOfBoundsException(String.format("start: %d, end: %d, length: %d", start, end, length));
+        }
+        target.charset = charset;
+        return target.set(bytes, offset + start, end - start);
+    }
+
+    /**
+     * 查找字节第一次出现的位置
+     * @param b b
+     * @param from 开始查找的位置
+     * @return 没有找到时返回 -1
+     */
+    public int indexOf(byte b, int from){
+        for(int i = Math.max(0, from); i < length; i++){
+            if(bytes[offset + i] == b){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 以 delimiter 分隔时字段的数量, 空行为 1 个空字段
+     * @param delimiter delimiter
+     * @return int
+     */
+    public int fieldCount(byte delimiter){
+        int count = 1;
+        for(int i = 0; i < length; i++){
+            if(bytes[offset + i] == delimiter){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 让 target 指向以 delimiter 分隔的第 index 个字段
+     * @param index 从 0 开始
+     * @param delimiter delimiter
+     * @param target target
+     * @return 字段不存在时返回 null
+     */
+    public ByteSlice field(int index, byte delimiter, ByteSlice target){
+        int start = 0;
+        for(int i = 0; i < index; i++){
+            int next = indexOf(delimiter, start);
+            if(next < 0){
+                return null;
+            }
+            start = next + 1;
+        }
+        int end = indexOf(delimiter, start);
+        return slice(start, end < 0 ? length : end, target);
+    }
+
+    /**
+     * 按十进制解析为 int, 规则与 {@link Integer#parseInt(String)} 相同
+     * @return int
+     */
+    public int parseInt(){
+        long value = parseLong(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        return (int) value;
+    }
+
+    /**
+     * 按十进制解析为 long, 规则与 {@link Long#parseLong(String)} 相同
+     * @return long
+     */
+    public long parseLong(){
+        return parseLong(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private long parseLong(long min, long max){
+        if(length == 0){
+            throw numberFormatException();
+        }
+        int i = 0;
+        boolean negative = false;
+        byte first = bytes[offset];
+        if(first == '-' || first == '+'){
+            negative = first == '-';
+            i++;
+            if(length == 1){
+                throw numberFormatException();
+            }
+        }
+        // 以负数累加, 可以表示最小值
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for(; i < length; i++){
+            int digit = bytes[offset + i] - '0';
+            if(digit < 0 || digit > 9 || result < multmin){
+                throw numberFormatException();
+            }
+            result *= 10;
+            if(result < limit + digit){
+                throw numberFormatException();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private NumberFormatException numberFormatException(){
+        return new NumberFormatException(String.format("For input string: \"%s\"", toString()));
+    }
+
+    /**
+     * 与一个 ASCII 字符序列逐字节比较
+     * @param ascii ascii
+     * @return boolean
+     */
+    public boolean contentEquals(CharSequence ascii){
+        if(ascii.length() != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if((bytes[offset + i] & 0xFF) != ascii.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 包装为 ByteBuffer, 与当前视图共享数据
+     * @return ByteBuffer
+     */
+    public ByteBuffer asByteBuffer(){
+        return ByteBuffer.wrap(bytes, offset, length).slice();
+    }
+
+    /**
+     * 复制出一个不再依赖原缓冲区的视图
+     * @return ByteSlice
+     */
+    public ByteSlice copy(){
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, offset, copy, 0, length);
+        return new ByteSlice(copy, 0, length, charset);
+    }
+
+    /**
+     * 按字符集解码为字符串
+     * @return String
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, charset);
+    }
+}
@@ -1,24 +1,39 @@
 package us.luosl.lslt.lang;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+/**
+ * 集合工具
+ * mkStr 系列方法在线性时间内拼接字符串: 每个元素只被追加一次, 并行流的各部分各自拼接后再合并;
+ * 基本类型的重载直接把数字追加到 StringBuilder, 不产生装箱对象
+ */
 public class CollectionUtils {
 
+    // 基本类型拼接时按每个元素的平均字符数预估容量
+    private static final int INT_CHARS_HINT = 8;
+    private static final int LONG_CHARS_HINT = 12;
+
     /**
      * stream 构建字符串
      * @param stream stream
      * @param separator 分隔符
      * @param toStringOp 对象转字符串
      * @param <T> 对象类型
-     * @return Optional<String>
+     * @return Optional<String> stream 为空时返回 Optional.empty()
      */
     public static <T> Optional<String> mkStr(Stream<T> stream, String separator, Function<T, String> toStringOp){
-        return stream.map(toStringOp).reduce((a, b) -> String.format("%s%s%s",a, separator, b));
+        return stream.collect(mkStrCollector(separator, toStringOp));
     }
 
     public static <T> Optional<String> mkStr(Stream<T> stream, String separator){
@@ -41,4 +56,243 @@ public class CollectionUtils {
         return mkStr(array, separator, Objects::toString);
     }
 
+    /**
+     * 带前缀与后缀的拼接, 例如构建 SQL 的 IN 子句
+     * @param stream stream
+     * @param prefix 前缀
+     * @param separator 分隔符
+     * @param suffix 后缀
+     * @param toStringOp 对象转字符串
+     * @param <T> 对象类型
+     * @return String stream 为空时返回 前缀 + 后缀
+     */
+    public static <T> String mkStr(Stream<T> stream, String prefix, String separator, String suffix,
+                                   Function<T, String> toStringOp){
+        return stream.collect(joinerCollector(separator, toStringOp)).wrap(prefix, suffix);
+    }
+
+    public static <T> String mkStr(Stream<T> stream, String prefix, String separator, String suffix){
+        return mkStr(stream, prefix, separator, suffix, Objects::toString);
+    }
+
+    public static <T> String mkStr(Collection<T> collection, String prefix, String separator, String suffix){
+        return mkStr(collection.stream(), prefix, separator, suffix);
+    }
+
+    /**
+     * 拼接字符串的 Collector, 可以用于并行流
+     * @param separator 分隔符
+     * @param toStringOp 对象转字符串
+     * @param <T> 对象类型
+     * @return Collector 没有元素时结果为 Optional.empty()
+     */
+    public static <T> Collector<T, ?, Optional<String>> mkStrCollector(String separator, Function<T, String> toStringOp){
+        return Collector.of(() -> new Joiner(separator, 16),
+                (joiner, t) -> joiner.next().append(toStringOp.apply(t)),
+                Joiner::merge,
+                Joiner::toOptional);
+    }
+
+    private static <T> Collector<T, ?, Joiner> joinerCollector(String separator, Function<T, String> toStringOp){
+        return Collector.of(() -> new Joiner(separator, 16),
+                (joiner, t) -> joiner.next().append(toStringOp.apply(t)),
+                Joiner::merge);
+    }
+
+    public static Optional<String> mkStr(int[] array, String separator){
+        return intJoiner(array, array.length, separator).toOptional();
+    }
+
+    public static Optional<String> mkStr(long[] array, String separator){
+        return longJoiner(array, array.length, separator).toOptional();
+    }
+
+    public static Optional<String> mkStr(IntList list, String separator){
+        return intJoiner(list.elements(), list.size(), separator).toOptional();
+    }
+
+    public static Optional<String> mkStr(LongList list, String separator){
+        return longJoiner(list.elements(), list.size(), separator).toOptional();
+    }
+
+    public static Optional<String> mkStr(LongSet set, String separator){
+        return mkStr(set.toArray(), separator);
+    }
+
+    public static Optional<String> mkStr(IntStream stream, String separator){
+        return intJoiner(stream, separator).toOptional();
+    }
+
+    public static Optional<String> mkStr(LongStream stream, String separator){
+        return longJoiner(stream, separator).toOptional();
+    }
+
+    public static String mkStr(int[] array, String prefix, String separator, String suffix){
+        return intJoiner(array, array.length, separator).wrap(prefix, suffix);
+    }
+
+    public static String mkStr(long[] array, String prefix, String separator, String suffix){
+        return longJoiner(array, array.length, separator).wrap(prefix, suffix);
+    }
+
+    public static String mkStr(IntList list, String prefix, String separator, String suffix){
+        return intJoiner(list.elements(), list.size(), separator).wrap(prefix, suffix);
+    }
+
+    public static String mkStr(LongList list, String prefix, String separator, String suffix){
+        return longJoiner(list.elements(), list.size(), separator).wrap(prefix, suffix);
+    }
+
+    public static String mkStr(LongSet set, String prefix, String separator, String suffix){
+        return mkStr(set.toArray(), prefix, separator, suffix);
+    }
+
+    public static String mkStr(IntStream stream, String prefix, String separator, String suffix){
+        return intJoiner(stream, separator).wrap(prefix, suffix);
+    }
+
+    public static String mkStr(LongStream stream, String prefix, String separator, String suffix){
+        return longJoiner(stream, separator).wrap(prefix, suffix);
+    }
+
+    /**
+     * 元素个数已知, 按每个元素的平均字符数一次性分配容量
+     */
+    private static Joiner intJoiner(int[] array, int length, String separator){
+        Joiner joiner = new Joiner(separator, capacity(length, INT_CHARS_HINT, separator));
+        for(int i = 0; i < length; i++){
+            joiner.next().append(array[i]);
+        }
+        return joiner;
+    }
+
+    private static Joiner longJoiner(long[] array, int length, String separator){
+        Joiner joiner = new Joiner(separator, capacity(length, LONG_CHARS_HINT, separator));
+        for(int i = 0; i < length; i++){
+            joiner.next().append(array[i]);
+        }
+        return joiner;
+    }
+
+    private static int capacity(int size, int charsHint, String separator){
+        return (int) Math.min(Integer.MAX_VALUE - 8, (long) size * (charsHint + separator.length()));
+    }
+
+    private static Joiner intJoiner(IntStream stream, String separator){
+        return stream.collect(() -> new Joiner(separator, 16), (joiner, value) -> joiner.next().append(value),
+                Joiner::merge);
+    }
+
+    private static Joiner longJoiner(LongStream stream, String separator){
+        return stream.collect(() -> new Joiner(separator, 16), (joiner, value) -> joiner.next().append(value),
+                Joiner::merge);
+    }
+
+    /**
+     * 收集为 IntList 的 Collector, 可以作为归约 job 的 collector
+     * @return Collector
+     */
+    public static Collector<Integer, ?, IntList> toIntList(){
+        return Collector.of(IntList::new, IntList::add, IntList::addAll);
+    }
+
+    public static Collector<Long, ?, LongList> toLongList(){
+        return Collector.of(LongList::new, LongList::add, LongList::addAll);
+    }
+
+    public static Collector<Long, ?, LongSet> toLongSet(){
+        return Collector.of(LongSet::new, LongSet::add, LongSet::addAll, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * 按 key 计数的 Collector, 可以作为归约 job 的 collector, 各线程的局部计数在 job 结束时合并
+     * @param keyOp 从元素中取出 key
+     * @param <T> 元素类型
+     * @return Collector
+     */
+    public static <T> Collector<T, ?, LongLongMap> countingBy(ToLongFunction<? super T> keyOp){
+        return Collector.of(LongLongMap::new, (map, t) -> map.addTo(keyOp.applyAsLong(t), 1L),
+                LongLongMap::addAll, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * 逐个元素追加到 target, 不在内存中构建完整的字符串, 适合直接写入 Writer 等输出目标
+     * @param target target
+     * @param iterator iterator
+     * @param separator 分隔符
+     * @param toStringOp 对象转字符串
+     * @param <T> 对象类型
+     * @param <A> target 类型
+     * @return target
+     * @throws IOException target 写入失败
+     */
+    public static <T, A extends Appendable> A appendStr(A target, Iterator<T> iterator, String separator,
+                                                          Function<T, String> toStringOp) throws IOException {
+        if(iterator.hasNext()){
+            target.append(toStringOp.apply(iterator.next()));
+        }
+        while(iterator.hasNext()){
+            target.append(separator).append(toStringOp.apply(iterator.next()));
+        }
+        return target;
+    }
+
+    public static <T, A extends Appendable> A appendStr(A target, Iterable<T> iterable, String separator)
+            throws IOException {
+        return appendStr(target, iterable.iterator(), separator, Objects::toString);
+    }
+
+    public static <T, A extends Appendable> A appendStr(A target, Stream<T> stream, String separator,
+                                                          Function<T, String> toStringOp) throws IOException {
+        return appendStr(target, stream.sequential().iterator(), separator, toStringOp);
+    }
+
+    public static <T, A extends Appendable> A appendStr(A target, Stream<T> stream, String separator)
+            throws IOException {
+        return appendStr(target, stream, separator, Objects::toString);
+    }
+
+    /**
+     * 可合并的拼接状态, 合并时只复制一次右侧的内容
+     */
+    private static final class Joiner {
+        private final String separator;
+        private final StringBuilder builder;
+        private boolean empty = true;
+
+        Joiner(String separator, int capacity) {
+            this.separator = separator;
+            this.builder = new StringBuilder(Math.max(16, capacity));
+        }
+
+        /**
+         * 追加分隔符(第一个元素之前除外)并返回 builder, 由调用方追加元素
+         * @return StringBuilder
+         */
+        StringBuilder next(){
+            if(empty){
+                empty = false;
+            }else{
+                builder.append(separator);
+            }
+            return builder;
+        }
+
+        Joiner merge(Joiner other){
+            if(!other.empty){
+                next().append(other.builder);
+            }
+            return this;
+        }
+
+        Optional<String> toOptional(){
+            return empty ? Optional.empty() : Optional.of(builder.toString());
+        }
+
+        String wrap(String prefix, String suffix){
+            return new StringBuilder(prefix.length() + builder.length() + suffix.length())
+                    .append(prefix).append(builder).append(suffix).toString();
+        }
+    }
+
 }
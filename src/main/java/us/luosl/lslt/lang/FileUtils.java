@@ -1,9 +1,14 @@
 package us.luosl.lslt.lang;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FileUtils {
 
@@ -62,6 +67,92 @@ public class FileUtils {
         };
     }
 
+    /**
+     * 从指定的字节偏移量开始按行读取文件, 读取过程中可以得到每一行的偏移量, 用于断点续读
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @param offset 起始偏移量, 必须是某一行的行首
+     * @return OffsetLineReader
+     * @throws IOException 文件打开失败或字符集不支持
+     */
+    public static OffsetLineReader openOffsetLineReader(File file, String charset, long offset) throws IOException {
+        assert null != file && null != charset;
+        return new OffsetLineReader(file, charset, offset);
+    }
+
+    /**
+     * 逐行访问文件而不为每一行创建对象, 适合按分隔符切分字段并解析数值的场景;
+     * 传给 visitor 的 ByteSlice 被所有行复用, 只在当次回调中有效
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @param visitor visitor
+     * @throws IOException 文件读取失败或字符集不支持
+     */
+    public static void forEachByteLine(File file, String charset, Consumer<? super ByteSlice> visitor)
+            throws IOException {
+        ByteSlice line = new ByteSlice();
+        try(OffsetLineReader reader = openOffsetLineReader(file, charset, 0L)){
+            while(reader.readLine(line)){
+                visitor.accept(line);
+            }
+        }
+    }
+
+    /**
+     * 将文件映射到内存并按行拆分, 返回的 Spliterator 按换行符对齐的字节区间拆分, 可以被并行流
+     * 或 {@link us.luosl.lslt.concurrent.JobExecutor#submitSplittable} 在多个线程中并行解码;
+     * 超过 2GB 的文件分段映射
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @return Spliterator<String>
+     * @throws IOException 文件打开失败或字符集不支持
+     */
+    public static Spliterator<String> mappedLineSpliterator(File file, String charset) throws IOException {
+        assert null != file && null != charset;
+        return MappedLineSpliterator.open(file, lineCharset(charset));
+    }
+
+    /**
+     * 将文件映射到内存并转换为按行的 Stream, 调用 parallel() 后可以在多个线程中并行解码
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @return Stream<String>
+     * @throws IOException 文件打开失败或字符集不支持
+     */
+    public static Stream<String> asMappedLineStream(File file, String charset) throws IOException {
+        return StreamSupport.stream(mappedLineSpliterator(file, charset), false);
+    }
+
+    /**
+     * 打开一个可以被多个线程同时写入的异步写入器, 写入在专属的 IO 线程中执行, 关闭时刷盘;
+     * 需要有序输出或其他刷盘策略时使用 {@link AsyncFileWriter#of(File)} 配置
+     * @param file file
+     * @param charset 字符集, 换行符必须是单字节的 '\n'
+     * @return AsyncFileWriter
+     * @throws IOException 文件打开失败或字符集不支持
+     */
+    public static AsyncFileWriter openAsyncWriter(File file, String charset) throws IOException {
+        assert null != file && null != charset;
+        return AsyncFileWriter.of(file).setCharset(charset).open();
+    }
+
+    /**
+     * 检查字符集的换行符是否为单字节的 '\n', 按字节查找换行符的读取方式依赖这一点
+     * @param charset charset
+     * @return Charset
+     * @throws UnsupportedEncodingException 字符集不支持
+     */
+    static Charset lineCharset(String charset) throws UnsupportedEncodingException {
+        if(!Charset.isSupported(charset)){
+            throw new UnsupportedEncodingException(charset);
+        }
+        Charset cs = Charset.forName(charset);
+        if(!Arrays.equals("\n".getBytes(cs), new byte[]{'\n'})){
+            throw new UnsupportedEncodingException(charset + " is not compatible with single byte line feed");
+        }
+        return cs;
+    }
+
     /**
      * 将一个文件打开为指定字符集的 BufferedReader
      * @param file file
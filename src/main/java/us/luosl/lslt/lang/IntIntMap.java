@@ -0,0 +1,296 @@
+package us.luosl.lslt.lang;
+
+import java.util.Arrays;
+
+/**
+ * key 与 value 均为 int 的开放寻址哈希表, 线性探测, 不装箱
+ * 内存约为每个元素 2 * 4 字节 / 负载因子, 远小于 {@code HashMap<Integer, Integer>}; 不是线程安全的,
+ * 多线程计数使用 {@link StripedLongCountMap}
+ */
+public class IntIntMap {
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int maxFill;
+    // 不含 key 为 0 的元素个数, 0 作为空槽标记, key 为 0 的元素单独存放
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize 预计的元素个数, 达到之前不会扩容
+     */
+    public IntIntMap(int expectedSize) {
+        allocate(PrimitiveHash.tableSize(expectedSize));
+    }
+
+    private void allocate(int tableSize){
+        keys = new int[tableSize];
+        values = new int[tableSize];
+        mask = tableSize - 1;
+        maxFill = PrimitiveHash.maxFill(tableSize);
+    }
+
+    /**
+     * key 所在的位置, 不存在时为应插入位置的 -(下标 + 1)
+     */
+    private int find(int key){
+        int pos = PrimitiveHash.mix(key) & mask;
+        int current;
+        while((current = keys[pos]) != 0){
+            if(current == key){
+                return pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -(pos + 1);
+    }
+
+    public boolean containsKey(int key){
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    /**
+     * 获取 key 对应的值
+     * @param key key
+     * @param defaultValue key 不存在时返回的值
+     * @return int
+     */
+    public int get(int key, int defaultValue){
+        if(key == 0){
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int pos = find(key);
+        return pos >= 0 ? values[pos] : defaultValue;
+    }
+
+    /**
+     * 获取 key 对应的值, key 不存在时返回 0
+     * @param key key
+     * @return int
+     */
+    public int get(int key){
+        return get(key, 0);
+    }
+
+    /**
+     * 设置 key 对应的值
+     * @param key key
+     * @param value value
+     * @return 之前的值, key 不存在时返回 0
+     */
+    public int put(int key, int value){
+        if(key == 0){
+            int previous = zeroValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return previous;
+        }
+        int pos = find(key);
+        if(pos >= 0){
+            int previous = values[pos];
+            values[pos] = value;
+            return previous;
+        }
+        insert(-pos - 1, key, value);
+        return 0;
+    }
+
+    /**
+     * 在 key 对应的值上增加 delta, key 不存在时视为 0, 用于计数
+     * @param key key
+     * @param delta delta
+     * @return 增加后的值
+     */
+    public int addTo(int key, int delta){
+        if(key == 0){
+            hasZeroKey = true;
+            return zeroValue += delta;
+        }
+        int pos = find(key);
+        if(pos >= 0){
+            return values[pos] += delta;
+        }
+        insert(-pos - 1, key, delta);
+        return delta;
+    }
+
+    private void insert(int pos, int key, int value){
+        keys[pos] = key;
+        values[pos] = value;
+        if(++size >= maxFill){
+            rehash(keys.length << 1);
+        }
+    }
+
+    private void rehash(int tableSize){
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(tableSize);
+        for(int i = 0; i < oldKeys.length; i++){
+            int key = oldKeys[i];
+            if(key != 0){
+                int pos = PrimitiveHash.mix(key) & mask;
+                while(keys[pos] != 0){
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = key;
+                values[pos] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * 删除 key, 之后的元素前移填补空位, 不留下删除标记
+     * @param key key
+     * @return key 是否存在
+     */
+    public boolean remove(int key){
+        if(key == 0){
+            boolean existed = hasZeroKey;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return existed;
+        }
+        int pos = find(key);
+        if(pos < 0){
+            return false;
+        }
+        size--;
+        while(true){
+            int last = pos;
+            int current;
+            while(true){
+                pos = (pos + 1) & mask;
+                if((current = keys[pos]) == 0){
+                    keys[last] = 0;
+                    values[last] = 0;
+                    return true;
+                }
+                if(PrimitiveHash.shouldShift(last, PrimitiveHash.mix(current) & mask, pos)){
+                    break;
+                }
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    /**
+     * 把 other 中的每个值加到本表对应的 key 上, 用于合并多个线程的计数
+     * @param other other
+     * @return this
+     */
+    public IntIntMap addAll(IntIntMap other){
+        other.forEach(this::addTo);
+        return this;
+    }
+
+    public int size(){
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+
+    public void clear(){
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+
+    /**
+     * 遍历所有元素, 顺序不确定
+     * @param consumer consumer
+     */
+    public void forEach(EntryConsumer consumer){
+        if(hasZeroKey){
+            consumer.accept(0, zeroValue);
+        }
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] != 0){
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * 所有 key 的副本, 顺序不确定
+     * @return int[]
+     */
+    public int[] keys(){
+        int[] result = new int[size()];
+        int i = 0;
+        if(hasZeroKey){
+            result[i++] = 0;
+        }
+        for(int key : keys){
+            if(key != 0){
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof IntIntMap)){
+            return false;
+        }
+        IntIntMap other = (IntIntMap) o;
+        if(other.size() != size() || other.hasZeroKey != hasZeroKey || other.zeroValue != zeroValue){
+            return false;
+        }
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] != 0){
+                int pos = other.find(keys[i]);
+                if(pos < 0 || other.values[pos] != values[i]){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hasZeroKey ? Integer.hashCode(zeroValue) : 0;
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] != 0){
+                h += Integer.hashCode(keys[i]) ^ Integer.hashCode(values[i]);
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if(builder.length() > 1){
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    /**
+     * 元素的消费者
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
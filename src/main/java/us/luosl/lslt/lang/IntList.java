@@ -0,0 +1,191 @@
+package us.luosl.lslt.lang;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * 可增长的 int 列表, 元素直接存放在 int[] 中, 不装箱, 适合收集下标、id 等; 不是线程安全的
+ */
+public class IntList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] elements;
+    private int size;
+
+    public IntList() {
+        this.elements = EMPTY;
+    }
+
+    public IntList(int initialCapacity) {
+        if(initialCapacity < 0){
+            throw new IllegalArgumentException("initialCapacity must not be negative!");
+        }
+        this.elements = initialCapacity == 0 ? EMPTY : new int[initialCapacity];
+    }
+
+    public static IntList of(int... values){
+        IntList list = new IntList(values.length);
+        list.addAll(values);
+        return list;
+    }
+
+    /**
+     * 内部数组, 只有前 size 个元素有效, 供同包的工具类直接读取
+     * @return int[]
+     */
+    int[] elements(){
+        return elements;
+    }
+
+    private void ensureCapacity(int minCapacity){
+        if(minCapacity > elements.length){
+            elements = Arrays.copyOf(elements, PrimitiveArrays.grownCapacity(elements.length, minCapacity));
+        }
+    }
+
+    public void add(int value){
+        if(size == elements.length){
+            ensureCapacity(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public IntList addAll(int[] values){
+        ensureCapacity(size + values.length);
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+        return this;
+    }
+
+    public IntList addAll(IntList other){
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.elements, 0, elements, size, other.size);
+        size += other.size;
+        return this;
+    }
+
+    public int get(int index){
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * 替换指定位置的元素
+     * @param index index
+     * @param value value
+     * @return 原来的元素
+     */
+    public int set(int index, int value){
+        checkIndex(index);
+        int previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    /**
+     * 删除指定位置的元素, 之后的元素前移
+     * @param index index
+     * @return 被删除的元素
+     */
+    public int removeAt(int index){
+        checkIndex(index);
+        int previous = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return previous;
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException(String.format("index: %d, size: %d", index, size));
+        }
+    }
+
+    public int indexOf(int value){
+        for(int i = 0; i < size; i++){
+            if(elements[i] == value){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int value){
+        return indexOf(value) >= 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    public void sort(){
+        Arrays.sort(elements, 0, size);
+    }
+
+    /**
+     * 释放多余的容量
+     */
+    public void trimToSize(){
+        if(size < elements.length){
+            elements = size == 0 ? EMPTY : Arrays.copyOf(elements, size);
+        }
+    }
+
+    public void forEach(IntConsumer consumer){
+        for(int i = 0; i < size; i++){
+            consumer.accept(elements[i]);
+        }
+    }
+
+    public int[] toArray(){
+        return Arrays.copyOf(elements, size);
+    }
+
+    public IntStream stream(){
+        return Arrays.stream(elements, 0, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof IntList)){
+            return false;
+        }
+        IntList other = (IntList) o;
+        if(other.size != size){
+            return false;
+        }
+        for(int i = 0; i < size; i++){
+            if(elements[i] != other.elements[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for(int i = 0; i < size; i++){
+            h = 31 * h + elements[i];
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return CollectionUtils.mkStr(this, "[", ", ", "]");
+    }
+}
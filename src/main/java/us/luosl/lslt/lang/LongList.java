@@ -0,0 +1,191 @@
+package us.luosl.lslt.lang;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * 可增长的 long 列表, 元素直接存放在 long[] 中, 不装箱, 适合收集偏移量、时间戳等; 不是线程安全的
+ */
+public class LongList {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] elements;
+    private int size;
+
+    public LongList() {
+        this.elements = EMPTY;
+    }
+
+    public LongList(int initialCapacity) {
+        if(initialCapacity < 0){
+            throw new IllegalArgumentException("initialCapacity must not be negative!");
+        }
+        this.elements = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+    }
+
+    public static LongList of(long... values){
+        LongList list = new LongList(values.length);
+        list.addAll(values);
+        return list;
+    }
+
+    /**
+     * 内部数组, 只有前 size 个元素有效, 供同包的工具类直接读取
+     * @return long[]
+     */
+    long[] elements(){
+        return elements;
+    }
+
+    private void ensureCapacity(int minCapacity){
+        if(minCapacity > elements.length){
+            elements = Arrays.copyOf(elements, PrimitiveArrays.grownCapacity(elements.length, minCapacity));
+        }
+    }
+
+    public void add(long value){
+        if(size == elements.length){
+            ensureCapacity(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public LongList addAll(long[] values){
+        ensureCapacity(size + values.length);
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+        return this;
+    }
+
+    public LongList addAll(LongList other){
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.elements, 0, elements, size, other.size);
+        size += other.size;
+        return this;
+    }
+
+    public long get(int index){
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * 替换指定位置的元素
+     * @param index index
+     * @param value value
+     * @return 原来的元素
+     */
+    public long set(int index, long value){
+        checkIndex(index);
+        long previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    /**
+     * 删除指定位置的元素, 之后的元素前移
+     * @param index index
+     * @return 被删除的元素
+     */
+    public long removeAt(int index){
+        checkIndex(index);
+        long previous = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return previous;
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException(String.format("index: %d, size: %d", index, size));
+        }
+    }
+
+    public int indexOf(long value){
+        for(int i = 0; i < size; i++){
+            if(elements[i] == value){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value){
+        return indexOf(value) >= 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    public void sort(){
+        Arrays.sort(elements, 0, size);
+    }
+
+    /**
+     * 释放多余的容量
+     */
+    public void trimToSize(){
+        if(size < elements.length){
+            elements = size == 0 ? EMPTY : Arrays.copyOf(elements, size);
+        }
+    }
+
+    public void forEach(LongConsumer consumer){
+        for(int i = 0; i < size; i++){
+            consumer.accept(elements[i]);
+        }
+    }
+
+    public long[] toArray(){
+        return Arrays.copyOf(elements, size);
+    }
+
+    public LongStream stream(){
+        return Arrays.stream(elements, 0, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof LongList)){
+            return false;
+        }
+        LongList other = (LongList) o;
+        if(other.size != size){
+            return false;
+        }
+        for(int i = 0; i < size; i++){
+            if(elements[i] != other.elements[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for(int i = 0; i < size; i++){
+            h = 31 * h + Long.hashCode(elements[i]);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return CollectionUtils.mkStr(this, "[", ", ", "]");
+    }
+}
@@ -0,0 +1,218 @@
+package us.luosl.lslt.lang;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * long 的开放寻址哈希集合, 线性探测, 不装箱; 不是线程安全的
+ */
+public class LongSet {
+
+    private long[] keys;
+    private int mask;
+    private int maxFill;
+    // 不含 0 的元素个数, 0 作为空槽标记单独记录
+    private int size;
+    private boolean hasZero;
+
+    public LongSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize 预计的元素个数, 达到之前不会扩容
+     */
+    public LongSet(int expectedSize) {
+        allocate(PrimitiveHash.tableSize(expectedSize));
+    }
+
+    public static LongSet of(long... values){
+        LongSet set = new LongSet(values.length);
+        for(long value : values){
+            set.add(value);
+        }
+        return set;
+    }
+
+    private void allocate(int tableSize){
+        keys = new long[tableSize];
+        mask = tableSize - 1;
+        maxFill = PrimitiveHash.maxFill(tableSize);
+    }
+
+    private int find(long key){
+        int pos = PrimitiveHash.mix(key) & mask;
+        long current;
+        while((current = keys[pos]) != 0){
+            if(current == key){
+                return pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -(pos + 1);
+    }
+
+    /**
+     * 添加元素
+     * @param value value
+     * @return 集合中原本是否没有该元素
+     */
+    public boolean add(long value){
+        if(value == 0){
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+        int pos = find(value);
+        if(pos >= 0){
+            return false;
+        }
+        keys[-pos - 1] = value;
+        if(++size >= maxFill){
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    private void rehash(int tableSize){
+        long[] oldKeys = keys;
+        allocate(tableSize);
+        for(long key : oldKeys){
+            if(key != 0){
+                int pos = PrimitiveHash.mix(key) & mask;
+                while(keys[pos] != 0){
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = key;
+            }
+        }
+    }
+
+    public boolean contains(long value){
+        return value == 0 ? hasZero : find(value) >= 0;
+    }
+
+    /**
+     * 删除元素, 之后的元素前移填补空位
+     * @param value value
+     * @return 元素是否存在
+     */
+    public boolean remove(long value){
+        if(value == 0){
+            boolean existed = hasZero;
+            hasZero = false;
+            return existed;
+        }
+        int pos = find(value);
+        if(pos < 0){
+            return false;
+        }
+        size--;
+        while(true){
+            int last = pos;
+            long current;
+            while(true){
+                pos = (pos + 1) & mask;
+                if((current = keys[pos]) == 0){
+                    keys[last] = 0;
+                    return true;
+                }
+                if(PrimitiveHash.shouldShift(last, PrimitiveHash.mix(current) & mask, pos)){
+                    break;
+                }
+            }
+            keys[last] = current;
+        }
+    }
+
+    public LongSet addAll(LongSet other){
+        other.forEach(this::add);
+        return this;
+    }
+
+    public int size(){
+        return size + (hasZero ? 1 : 0);
+    }
+
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+
+    public void clear(){
+        Arrays.fill(keys, 0L);
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * 遍历所有元素, 顺序不确定
+     * @param consumer consumer
+     */
+    public void forEach(LongConsumer consumer){
+        if(hasZero){
+            consumer.accept(0L);
+        }
+        for(long key : keys){
+            if(key != 0){
+                consumer.accept(key);
+            }
+        }
+    }
+
+    /**
+     * 所有元素的副本, 顺序不确定
+     * @return long[]
+     */
+    public long[] toArray(){
+        long[] result = new long[size()];
+        int i = 0;
+        if(hasZero){
+            result[i++] = 0L;
+        }
+        for(long key : keys){
+            if(key != 0){
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    public LongStream stream(){
+        return LongStream.of(toArray());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof LongSet)){
+            return false;
+        }
+        LongSet other = (LongSet) o;
+        if(other.size() != size() || other.hasZero != hasZero){
+            return false;
+        }
+        for(long key : keys){
+            if(key != 0 && other.find(key) < 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for(long key : keys){
+            h += Long.hashCode(key);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return CollectionUtils.mkStr(this, "[", ", ", "]");
+    }
+}
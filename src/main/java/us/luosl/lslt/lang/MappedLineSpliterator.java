@@ -0,0 +1,226 @@
+package us.luosl.lslt.lang;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * 基于内存映射的按行 Spliterator
+ * 文件按字节区间拆分, 拆分点对齐到换行符之后, 各区间可以在不同线程中并行解码;
+ * 单个映射不能超过 2GB, 大文件按固定大小分段映射, 跨段的行复制后再解码。
+ * 映射在创建后即关闭文件通道, 映射的内存随对象被回收时释放
+ */
+class MappedLineSpliterator implements Spliterator<String> {
+
+    // 默认每段映射 1GB
+    private static final int DEFAULT_SEGMENT_BITS = 30;
+    // 小于该字节数的区间不再拆分
+    private static final long MIN_SPLIT_BYTES = 64 * 1024;
+    // 估算平均行长时采样的字节数
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private final MappedByteBuffer[] segments;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final Charset charset;
+    private final double bytesPerLine;
+    private long position;
+    private final long end;
+    // 每段的独立视图与解码缓冲, 只由持有该 Spliterator 的线程使用
+    private ByteBuffer[] views;
+    private byte[] scratch = new byte[256];
+
+    private MappedLineSpliterator(MappedByteBuffer[] segments, int segmentBits, Charset charset, double bytesPerLine,
+                                  long position, long end) {
+        this.segments = segments;
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+        this.charset = charset;
+        this.bytesPerLine = bytesPerLine;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * 映射整个文件
+     * @param file file
+     * @param charset 换行符为单字节 '\n' 的字符集
+     * @return MappedLineSpliterator
+     * @throws IOException IOException
+     */
+    static MappedLineSpliterator open(File file, Charset charset) throws IOException {
+        return open(file, charset, DEFAULT_SEGMENT_BITS);
+    }
+
+    /**
+     * 以 2^segmentBits 字节为一段映射整个文件
+     * @param file file
+     * @param charset 换行符为单字节 '\n' 的字符集
+     * @param segmentBits 不超过 30
+     * @return MappedLineSpliterator
+     * @throws IOException IOException
+     */
+    static MappedLineSpliterator open(File file, Charset charset, int segmentBits) throws IOException {
+        if(segmentBits <= 0 || segmentBits > DEFAULT_SEGMENT_BITS){
+            throw new IllegalArgumentException("segmentBits must be between 1 and 30!");
+        }
+        long segmentSize = 1L << segmentBits;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            long size = channel.size();
+            int count = (int) ((size + segmentSize - 1) >>> segmentBits);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for(int i = 0; i < count; i++){
+                long offset = (long) i << segmentBits;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(segmentSize, size - offset));
+            }
+            return new MappedLineSpliterator(segments, segmentBits, charset, sampleBytesPerLine(segments), 0L, size);
+        }
+    }
+
+    private byte byteAt(long offset){
+        return segments[(int) (offset >>> segmentBits)].get((int) (offset & segmentMask));
+    }
+
+    /**
+     * 查找 [from, limit) 中第一个换行符的位置
+     * @return 没有找到时返回 limit
+     */
+    private long indexOfNewline(long from, long limit){
+        long offset = from;
+        while(offset < limit){
+            MappedByteBuffer segment = segments[(int) (offset >>> segmentBits)];
+            int local = (int) (offset & segmentMask);
+            int localEnd = (int) Math.min(segment.limit(), local + (limit - offset));
+            for(int i = local; i < localEnd; i++){
+                if(segment.get(i) == '\n'){
+                    return offset + (i - local);
+                }
+            }
+            offset += localEnd - local;
+        }
+        return limit;
+    }
+
+    /**
+     * 用文件开头的一段估算平均行长
+     * @param segments segments
+     * @return double
+     */
+    private static double sampleBytesPerLine(MappedByteBuffer[] segments){
+        if(segments.length == 0){
+            return 1D;
+        }
+        // 采样只看第一段, 分段很小时估算会偏粗
+        int limit = Math.min(segments[0].limit(), SAMPLE_BYTES);
+        long lines = 0;
+        for(int i = 0; i < limit; i++){
+            if(segments[0].get(i) == '\n'){
+                lines++;
+            }
+        }
+        return lines == 0 ? Math.max(1D, limit) : (double) limit / lines;
+    }
+
+    private String decode(long start, long stop){
+        if(stop > start && byteAt(stop - 1) == '\r'){
+            stop--;
+        }
+        int length = (int) (stop - start);
+        if(scratch.length < length){
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+        }
+        int copied = 0;
+        long offset = start;
+        while(copied < length){
+            int index = (int) (offset >>> segmentBits);
+            ByteBuffer view = view(index);
+            int local = (int) (offset & segmentMask);
+            int n = Math.min(length - copied, view.limit() - local);
+            view.position(local);
+            view.get(scratch, copied, n);
+            copied += n;
+            offset += n;
+        }
+        return new String(scratch, 0, length, charset);
+    }
+
+    private ByteBuffer view(int index){
+        if(null == views){
+            views = new ByteBuffer[segments.length];
+        }
+        ByteBuffer view = views[index];
+        if(null == view){
+            view = views[index] = segments[index].duplicate();
+        }
+        return view;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if(position >= end){
+            return false;
+        }
+        long newline = indexOfNewline(position, end);
+        String line = decode(position, newline);
+        position = Math.min(end, newline + 1);
+        action.accept(line);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        while(position < end){
+            long newline = indexOfNewline(position, end);
+            String line = decode(position, newline);
+            position = Math.min(end, newline + 1);
+            action.accept(line);
+        }
+    }
+
+    /**
+     * 从剩余区间的中点之后的第一个换行符处拆分, 前半部分交给新的 Spliterator
+     * @return Spliterator<String>
+     */
+    @Override
+    public Spliterator<String> trySplit() {
+        long remaining = end - position;
+        if(remaining < MIN_SPLIT_BYTES){
+            return null;
+        }
+        long mid = position + remaining / 2;
+        long newline = indexOfNewline(mid, end);
+        if(newline + 1 >= end){
+            return null;
+        }
+        MappedLineSpliterator prefix = new MappedLineSpliterator(segments, segmentBits, charset, bytesPerLine,
+                position, newline + 1);
+        position = newline + 1;
+        return prefix;
+    }
+
+    /**
+     * 按采样得到的平均行长估算剩余行数, 只是估算值, 不是精确的行数
+     * @return long
+     */
+    @Override
+    public long estimateSize() {
+        long remaining = end - position;
+        return remaining <= 0 ? 0L : Math.max(1L, (long) Math.ceil(remaining / bytesPerLine));
+    }
+
+    /**
+     * 拆分点对齐到换行符, 拆分前无法知道各区间的精确行数, 因此不报告 SIZED 与 SUBSIZED,
+     * {@link #estimateSize()} 只是按字节数得到的估算值
+     * @return int
+     */
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
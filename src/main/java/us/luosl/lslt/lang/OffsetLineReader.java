@@ -0,0 +1,133 @@
+package us.luosl.lslt.lang;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 记录字节偏移量的按行读取器
+ * 按字节查找换行符, 因此可以从任意行首的偏移量开始读取, 并随时得到下一行在文件中的起始位置;
+ * 只支持换行符为单字节 '\n' 的字符集(ASCII, UTF-8, GBK 等), 行尾的 '\r' 会被去掉
+ */
+public class OffsetLineReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    // buffer[0] 在文件中的偏移量
+    private long bufferOffset;
+    private boolean eof;
+    private final ByteSlice line = new ByteSlice();
+
+    /**
+     * 从指定偏移量开始读取文件
+     * @param file file
+     * @param charset 字符集
+     * @param offset 起始偏移量, 必须是某一行的行首
+     * @throws IOException 文件打开失败
+     */
+    public OffsetLineReader(File file, String charset, long offset) throws IOException {
+        this.charset = FileUtils.lineCharset(charset);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        if(offset < 0 || offset > size){
+            channel.close();
+            throw new IllegalArgumentException(String.format("offset %d is out of file size %d", offset, size));
+        }
+        this.channel.position(offset);
+        this.bufferOffset = offset;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * 下一行(尚未读取部分)在文件中的起始偏移量
+     * @return long
+     */
+    public long getOffset(){
+        return bufferOffset + position;
+    }
+
+    /**
+     * 读取下一行
+     * @return 不包含换行符的行, 已经读到文件末尾时返回 null
+     * @throws IOException IOException
+     */
+    public String readLine() throws IOException {
+        return readLine(line) ? line.toString() : null;
+    }
+
+    /**
+     * 读取下一行到 target 中, 不创建任何对象; target 指向读取器的缓冲区, 只在下一次读取之前有效
+     * @param target target
+     * @return 已经读到文件末尾时返回 false
+     * @throws IOException IOException
+     */
+    public boolean readLine(ByteSlice target) throws IOException {
+        // 当前行已经扫描过的字节数, 补充数据后从这里继续查找
+        int scanned = 0;
+        while(true){
+            for(int i = position + scanned; i < limit; i++){
+                if(buffer[i] == '\n'){
+                    point(target, position, i);
+                    position = i + 1;
+                    return true;
+                }
+            }
+            scanned = limit - position;
+            if(eof || !fill()){
+                if(position == limit){
+                    return false;
+                }
+                // 最后一行没有换行符
+                point(target, position, limit);
+                position = limit;
+                return true;
+            }
+        }
+    }
+
+    private void point(ByteSlice target, int start, int end){
+        if(end > start && buffer[end - 1] == '\r'){
+            end--;
+        }
+        target.set(buffer, start, end - start).setCharset(charset);
+    }
+
+    /**
+     * 读取更多数据, 当前行未读完的部分移到缓冲区头部, 一行超过缓冲区时扩容
+     * @return 是否读到了数据
+     * @throws IOException IOException
+     */
+    private boolean fill() throws IOException {
+        if(position > 0){
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            bufferOffset += position;
+            limit -= position;
+            position = 0;
+        }
+        if(limit == buffer.length){
+            buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        }
+        int n = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+        if(n < 0){
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
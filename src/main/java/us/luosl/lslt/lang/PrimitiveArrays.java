@@ -0,0 +1,31 @@
+package us.luosl.lslt.lang;
+
+/**
+ * 基本类型列表扩容的公共计算
+ */
+final class PrimitiveArrays {
+
+    static final int DEFAULT_CAPACITY = 10;
+    // 数组大小的上限, 与 ArrayList 相同
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private PrimitiveArrays() {
+    }
+
+    /**
+     * 扩容后的数组大小, 按 1.5 倍增长, 至少为 minCapacity
+     * @param length 当前数组大小
+     * @param minCapacity 需要的最小容量
+     * @return int
+     */
+    static int grownCapacity(int length, int minCapacity){
+        if(minCapacity > MAX_ARRAY_SIZE){
+            throw new OutOfMemoryError("Required array size too large");
+        }
+        int grown = length + (length >> 1);
+        if(grown < 0 || grown > MAX_ARRAY_SIZE){
+            grown = MAX_ARRAY_SIZE;
+        }
+        return Math.max(Math.max(grown, DEFAULT_CAPACITY), minCapacity);
+    }
+}
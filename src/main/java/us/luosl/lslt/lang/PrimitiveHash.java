@@ -0,0 +1,60 @@
+package us.luosl.lslt.lang;
+
+/**
+ * 基本类型开放寻址哈希表的公共计算
+ */
+final class PrimitiveHash {
+
+    // 负载因子, 线性探测在较低的负载下查找更快
+    static final float LOAD_FACTOR = 0.6F;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private PrimitiveHash() {
+    }
+
+    /**
+     * 打散 key 的各个位, 表的下标取低位
+     * @param key key
+     * @return int
+     */
+    static int mix(int key){
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int mix(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 容纳 expectedSize 个元素所需的表大小, 为 2 的幂
+     * @param expectedSize expectedSize
+     * @return int
+     */
+    static int tableSize(int expectedSize){
+        if(expectedSize < 0){
+            throw new IllegalArgumentException("expectedSize must not be negative!");
+        }
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR);
+        if(needed > MAX_CAPACITY){
+            throw new IllegalArgumentException(String.format("expectedSize %d is too large!", expectedSize));
+        }
+        return Math.max(4, Integer.highestOneBit((int) Math.max(1L, needed - 1)) << 1);
+    }
+
+    static int maxFill(int tableSize){
+        return Math.min(tableSize - 1, (int) Math.ceil(tableSize * LOAD_FACTOR));
+    }
+
+    /**
+     * 线性探测表删除后, 位于 pos 的元素是否需要前移到空出的 last: 其理想位置 slot 不在 (last, pos] 之间时需要
+     * @param last 空出的位置
+     * @param slot 元素的理想位置
+     * @param pos 元素当前位置
+     * @return boolean
+     */
+    static boolean shouldShift(int last, int slot, int pos){
+        return last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos);
+    }
+}
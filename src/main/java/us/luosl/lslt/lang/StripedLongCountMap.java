@@ -0,0 +1,103 @@
+package us.luosl.lslt.lang;
+
+/**
+ * 可以被多个线程同时累加的 long 计数表
+ * 按 key 的哈希分为多个分段, 每个分段是一个由自身加锁的 {@link LongLongMap}, 不同分段的累加互不竞争;
+ * 分段的选取与分段内的下标使用 key 哈希的不同位, 元素在分段内仍然均匀分布
+ */
+public class StripedLongCountMap {
+
+    private final LongLongMap[] stripes;
+    private final int stripeMask;
+
+    /**
+     * 分段数为 CPU 核数的 4 倍
+     */
+    public StripedLongCountMap() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param stripes 分段数, 向上取整为 2 的幂
+     */
+    public StripedLongCountMap(int stripes) {
+        if(stripes <= 0){
+            throw new IllegalArgumentException("stripes must be greater than 0!");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new LongLongMap[size];
+        for(int i = 0; i < size; i++){
+            this.stripes[i] = new LongLongMap();
+        }
+        this.stripeMask = size - 1;
+    }
+
+    private LongLongMap stripe(long key){
+        // 与 PrimitiveHash.mix 使用不同的乘数并取高位
+        return stripes[(int) ((key * 0xC2B2AE3D27D4EB4FL) >>> 40) & stripeMask];
+    }
+
+    /**
+     * key 的计数加 1
+     * @param key key
+     * @return 增加后的计数
+     */
+    public long increment(long key){
+        return addTo(key, 1L);
+    }
+
+    public long addTo(long key, long delta){
+        LongLongMap stripe = stripe(key);
+        synchronized (stripe){
+            return stripe.addTo(key, delta);
+        }
+    }
+
+    public long get(long key){
+        LongLongMap stripe = stripe(key);
+        synchronized (stripe){
+            return stripe.get(key);
+        }
+    }
+
+    /**
+     * 元素个数, 与累加并发时为近似值
+     * @return int
+     */
+    public int size(){
+        int size = 0;
+        for(LongLongMap stripe : stripes){
+            synchronized (stripe){
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 遍历所有计数, 逐个分段加锁, 与累加并发时不是一个一致的快照
+     * @param consumer consumer
+     */
+    public void forEach(LongLongMap.EntryConsumer consumer){
+        for(LongLongMap stripe : stripes){
+            synchronized (stripe){
+                stripe.forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * 合并为一个普通的计数表
+     * @return LongLongMap
+     */
+    public LongLongMap toMap(){
+        LongLongMap map = new LongLongMap(size());
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -0,0 +1,146 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+public class AdaptivePoolSizerTest {
+
+    /**
+     * 阻塞型任务的吞吐量随线程数增加, 控制器应逐步增加线程; 线程池关闭后采样任务自行停止
+     * @throws Exception Exception
+     */
+    @Test
+    public void adaptivePoolSizingTest() throws Exception {
+        Logger logger = Logger.getLogger(AdaptivePoolSizer.class.getName());
+        List<String> decisions = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch grown = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                String message = record.getMessage();
+                decisions.add(message);
+                if(message.startsWith("[adaptive]") && message.matches(".*pool size \\d+ -> [4-8]")){
+                    grown.countDown();
+                }else if(message.startsWith("[closed pool] adaptive sizing stopped")){
+                    stopped.countDown();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.addHandler(handler);
+        try {
+            JobExecutor jobExecutor = JobExecutor.create(1, 8).setName("adaptive");
+            AdaptivePoolSizer sizer = AdaptivePoolSizer.of(1, 8)
+                    .setSampleInterval(Duration.ofMillis(100))
+                    .setProbeSamples(1);
+            try {
+                jobExecutor.enableAdaptiveSizing(sizer);
+                assert 1 == sizer.getPoolSize();
+                // 提交受在途许可限制, 线程数增加到 4 之后停止提交
+                JobObserver<?> observer = jobExecutor.beginJob("sleepy job");
+                for(int i = 0; i < 2000 && grown.getCount() > 0; i++){
+                    jobExecutor.submitWithJobObserver(() -> {
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }, observer);
+                }
+                assert grown.await(10, TimeUnit.SECONDS);
+                assert sizer.getPoolSize() >= 4 : sizer.getPoolSize();
+                assert sizer.getPoolSize() <= 8;
+                assert decisions.stream().anyMatch(message -> message.contains("pool size 1 -> 2"));
+                observer.cancel();
+                jobExecutor.awaitCompleteAsync(observer).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            } finally {
+                jobExecutor.shutdown();
+            }
+            assert null == jobExecutor.getAdaptivePoolSizer() && !sizer.isRunning();
+            assert jobExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+            // 直接关闭底层线程池时采样任务自行停止
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+            AdaptivePoolSizer poolSizer = AdaptivePoolSizer.of(1, 4).setSampleInterval(Duration.ofMillis(20));
+            JobExecutor.create(pool).setName("closed pool").enableAdaptiveSizing(poolSizer);
+            pool.shutdown();
+            assert stopped.await(5, TimeUnit.SECONDS);
+            assert !poolSizer.isRunning();
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    /**
+     * 参数与线程池类型校验
+     */
+    @Test
+    public void adaptiveSizingArgumentsTest() {
+        JobExecutor workStealing = JobExecutor.createWorkStealing(2);
+        try{
+            workStealing.enableAdaptiveSizing(1, 2);
+            assert false;
+        }catch (RuntimeException e){
+            // 只支持 ThreadPoolExecutor
+        }finally {
+            workStealing.shutdown();
+        }
+        try{
+            AdaptivePoolSizer.of(4, 2);
+            assert false;
+        }catch (IllegalArgumentException e){
+            // 上下界无效
+        }
+        JobExecutor adaptive = JobExecutor.createAdaptive(2, 6);
+        AdaptivePoolSizer adaptiveSizer = adaptive.getAdaptivePoolSizer();
+        assert 2 == adaptiveSizer.getPoolSize() && 6 == adaptiveSizer.getMaxPoolSize() && adaptiveSizer.isRunning();
+        adaptive.shutdown();
+        assert !adaptiveSizer.isRunning();
+    }
+
+    /**
+     * 在两次采样之间开始并结束的 job 也计入吞吐量
+     */
+    @Test
+    public void shortJobsCountedTest() {
+        // 采样间隔足够长, 测试期间不会自动采样
+        AdaptivePoolSizer sizer = AdaptivePoolSizer.of(2, 4).setSampleInterval(Duration.ofHours(1));
+        JobExecutor jobExecutor = JobExecutor.create(2, 4).enableAdaptiveSizing(sizer);
+        try{
+            for(int i = 0; i < 50; i++){
+                JobObserver<Integer> job = jobExecutor.beginJobWithCallback((Integer n) -> { }, "short-" + i);
+                jobExecutor.submitAll(IntStream.range(0, 100).boxed(), n -> n, job);
+                jobExecutor.awaitComplete(job);
+            }
+            JobObserver<?> running = jobExecutor.beginJob("running");
+            jobExecutor.submitWithJobObserver(() -> { }, running);
+            long seen = sizer.finishedSinceLastSample();
+            assert seen == 5000 || seen == 5001;
+            // 结束的 job 只结算上次采样之后的部分, 不会重复计数
+            jobExecutor.awaitComplete(running);
+            assert 5001 == seen + sizer.finishedSinceLastSample();
+        }finally {
+            jobExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchSubmitTest {
+
+    /**
+     * 批量提交测试, 计数与回调按元素进行
+     */
+    @Test
+    public void submitAllTest() {
+        int num = 200000;
+        List<Integer> items = new ArrayList<>(num);
+        for(int i = 0; i< num; i++){
+            items.add(i);
+        }
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        for(int batchSize: new int[]{0, 1, 7, 1000}){
+            AtomicInteger ai = new AtomicInteger();
+            JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer i) -> ai.getAndIncrement());
+            jobExecutor.submitAll(items, i -> {
+                if(i % 1000 == 0) throw new RuntimeException("error " + i);
+                return i;
+            }, observer, batchSize);
+            jobExecutor.awaitComplete(observer, e -> {});
+            assert num == observer.getSubmitCount();
+            assert num / 1000 == observer.getErrorCount();
+            assert num - num / 1000 == observer.getCompleteCount();
+            assert num - num / 1000 == ai.get();
+        }
+    }
+}
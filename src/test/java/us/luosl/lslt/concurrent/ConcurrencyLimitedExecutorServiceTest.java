@@ -0,0 +1,53 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimitedExecutorServiceTest {
+
+    /**
+     * 等待执行许可的任务被 shutdownNow 中断时计为取消, job 仍然能够结束
+     * @throws Exception Exception
+     */
+    @Test
+    public void shutdownNowWhileWaitingForPermitsTest() throws Exception {
+        // 每个任务在线程池的线程上开始执行(随后等待许可)时计数
+        CountDownLatch entered = new CountDownLatch(5);
+        ThreadPoolExecutor threads = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                entered.countDown();
+            }
+        };
+        ConcurrencyLimitedExecutorService limited = new ConcurrencyLimitedExecutorService(threads, 1);
+        JobExecutor jobExecutor = JobExecutor.create(limited);
+        JobObserver<?> observer = jobExecutor.beginJob("shutdown now");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+        jobExecutor.submitWithJobObserver(() -> {
+            started.countDown();
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, observer);
+        assert started.await(5, TimeUnit.SECONDS);
+        for(int i = 0; i < 4; i++){
+            jobExecutor.submitWithJobObserver(() -> { }, observer);
+        }
+        assert entered.await(5, TimeUnit.SECONDS);
+        assert 5 == threads.getActiveCount() && 1 == limited.getActiveCount();
+
+        limited.shutdownNow();
+        JobSummary summary = jobExecutor.awaitCompleteAsync(observer).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assert 5 == summary.getSubmitCount();
+        assert 4 == summary.getCancelledCount() && 1 == summary.getErrorCount();
+        assert limited.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
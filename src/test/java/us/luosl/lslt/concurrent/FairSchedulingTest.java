@@ -0,0 +1,39 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class FairSchedulingTest {
+
+    /**
+     * 公平调度测试, 小 job 不会排在大 job 的积压任务之后
+     */
+    @Test
+    public void fairSchedulingTest() {
+        JobExecutor jobExecutor = JobExecutor.createFair(2);
+        JobObserver<?> backfill = jobExecutor.beginJob("backfill").setMaxInFlight(0);
+        Runnable work = () -> {
+            try {
+                TimeUnit.MICROSECONDS.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        int backfillSize = 20000;
+        for(int i = 0; i < backfillSize; i++){
+            jobExecutor.submitWithJobObserver(work, backfill);
+        }
+        JobObserver<?> interactive = jobExecutor.beginJob("interactive").setWeight(4);
+        for(int i = 0; i < 100; i++){
+            jobExecutor.submitWithJobObserver(work, interactive);
+        }
+        jobExecutor.awaitComplete(interactive);
+        long backfillFinished = backfill.snapshot().getFinishedCount();
+        assert 100 == interactive.getCompleteCount();
+        assert backfillFinished < backfillSize / 2;
+        backfill.cancel();
+        jobExecutor.awaitComplete(backfill);
+        assert backfillSize == backfill.snapshot().getFinishedCount();
+    }
+}
@@ -0,0 +1,105 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FileJobTest {
+
+    /**
+     * 断点续处理测试, 第一次处理中途取消, 第二次从断点继续, 每一行恰好处理一次
+     */
+    @Test
+    public void checkpointTest() throws IOException {
+        int num = 50000;
+        File data = File.createTempFile("checkpoint-data", ".txt");
+        File checkpointFile = new File(data.getPath() + ".ckpt");
+        data.deleteOnExit();
+        checkpointFile.deleteOnExit();
+        try(PrintWriter writer = new PrintWriter(data, "UTF-8")){
+            for(int i = 0; i < num; i++){
+                writer.print("行-" + i + (i % 7 == 0 ? "\r\n" : "\n"));
+            }
+        }
+        Map<String, AtomicInteger> processed = new ConcurrentHashMap<>();
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+
+        JobObserver<String> first = jobExecutor.beginJobWithCallback((String line) -> { }, "checkpoint first");
+        AtomicInteger firstCount = new AtomicInteger();
+        jobExecutor.submitFileLines(data, "UTF-8", line -> {
+            processed.computeIfAbsent(line, k -> new AtomicInteger()).incrementAndGet();
+            if(firstCount.incrementAndGet() == num / 3){
+                first.cancel();
+            }
+            return line;
+        }, first, JobCheckpoint.of(checkpointFile).setWindowSize(16384).setFlushInterval(10, TimeUnit.MILLISECONDS));
+        jobExecutor.awaitComplete(first, e -> { });
+        assert first.isCancelled();
+        assert checkpointFile.exists();
+        assert processed.size() < num;
+
+        JobObserver<String> second = jobExecutor.beginJobWithCallback((String line) -> { }, "checkpoint second");
+        JobCheckpoint checkpoint = JobCheckpoint.of(checkpointFile);
+        jobExecutor.submitFileLines(data, "UTF-8", line -> {
+            processed.computeIfAbsent(line, k -> new AtomicInteger()).incrementAndGet();
+            return line;
+        }, second, checkpoint);
+        jobExecutor.awaitComplete(second);
+        assert num == processed.size();
+        assert processed.values().stream().allMatch(c -> c.get() == 1);
+        assert processed.containsKey("行-0") && processed.keySet().stream().noneMatch(k -> k.endsWith("\r"));
+        assert num == checkpoint.getWatermark();
+        assert !checkpointFile.exists();
+    }
+
+    @Test
+    public void processFileTest() throws IOException {
+        File data = File.createTempFile("process-file", ".txt");
+        data.deleteOnExit();
+        int num = 200000;
+        try(PrintWriter writer = new PrintWriter(data, "UTF-8")){
+            for(int i = 0; i < num; i++){
+                writer.println(i);
+            }
+        }
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        LongAdder sum = new LongAdder();
+        JobSummary summary = jobExecutor.processFile(data, "UTF-8", line -> {
+            sum.add(Integer.parseInt(line));
+            return null;
+        });
+        assert num == summary.getCompleteCount() && 0 == summary.getErrorCount();
+        assert (long) num * (num - 1) / 2 == sum.sum();
+        assert data.length() == summary.getSnapshot().getInputReadBytes();
+        assert num == summary.getSnapshot().getEstimatedAllCount();
+
+        // 读取过程中按字节进度估算总行数, 提交端被在途许可限制时读取线程只预读有限的批次
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer i) -> { }, "process file");
+        observer.setMaxInFlight(2);
+        List<Long> estimates = Collections.synchronizedList(new ArrayList<>());
+        jobExecutor.submitFile(data, "UTF-8", line -> {
+            estimates.add(observer.getEstimatedAllCount());
+            return Integer.parseInt(line);
+        }, observer, 2);
+        jobExecutor.awaitComplete(observer);
+        assert num == observer.getCompleteCount();
+        assert estimates.stream().allMatch(estimate -> estimate > num / 2 && estimate < num * 2);
+
+        try{
+            jobExecutor.processFile(new File(data.getPath() + ".missing"), "UTF-8", line -> line);
+            assert false;
+        }catch (IOException e){
+            // 文件不存在
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobBackpressureTest {
+
+    /**
+     * 在途任务数限制测试
+     * @throws InterruptedException
+     */
+    @Test
+    public void maxInFlightTest() throws InterruptedException {
+        JobExecutor jobExecutor = JobExecutor.create(8, 8);
+        JobObserver<?> observer = jobExecutor.beginJob("max in flight test").setMaxInFlight(3);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        for(int i = 0; i < 200; i++){
+            jobExecutor.submitWithJobObserver(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+            }, observer);
+        }
+        jobExecutor.awaitComplete(observer);
+        assert maxActive.get() <= 3;
+        assert 200 == observer.getCompleteCount();
+
+        // 许可耗尽时限时提交失败
+        CountDownLatch latch = new CountDownLatch(1);
+        JobObserver<?> blocked = jobExecutor.beginJob("try submit test").setMaxInFlight(1);
+        Runnable await = () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        assert jobExecutor.trySubmitWithJobObserver(await, blocked, 10, TimeUnit.MILLISECONDS);
+        assert !jobExecutor.trySubmitWithJobObserver(await, blocked, 10, TimeUnit.MILLISECONDS);
+        latch.countDown();
+        jobExecutor.awaitComplete(blocked);
+        assert 1 == blocked.getCompleteCount();
+    }
+
+    /**
+     * 默认的在途许可只占共享队列的一小部分: 一个 job 用尽许可后被限流, 其他 job 仍然可以立即提交
+     * @throws Exception Exception
+     */
+    @Test
+    public void defaultMaxInFlightTest() throws Exception {
+        JobExecutor jobExecutor = JobExecutor.create(2, 2);
+        try{
+            assert 4 == jobExecutor.getDefaultMaxInFlight();
+            CountDownLatch release = new CountDownLatch(1);
+            Runnable await = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            JobObserver<?> fast = jobExecutor.beginJob("fast producer");
+            for(int i = 0; i < 4; i++){
+                assert jobExecutor.trySubmitWithJobObserver(await, fast, 1, TimeUnit.SECONDS);
+            }
+            assert !jobExecutor.trySubmitWithJobObserver(await, fast, 10, TimeUnit.MILLISECONDS);
+            // 两个任务在执行, 其余在队列中, 队列容量为 20
+            assert jobExecutor.getQueueDepth() <= 2;
+
+            JobObserver<?> other = jobExecutor.beginJob("other");
+            for(int i = 0; i < 4; i++){
+                assert jobExecutor.trySubmitWithJobObserver(await, other, 10, TimeUnit.MILLISECONDS);
+            }
+            release.countDown();
+            jobExecutor.awaitComplete(fast);
+            jobExecutor.awaitComplete(other);
+            assert 4 == fast.getCompleteCount() && 4 == other.getCompleteCount();
+            assert 0 == jobExecutor.getRejectedCount();
+        }finally {
+            jobExecutor.shutdownNow();
+        }
+    }
+}
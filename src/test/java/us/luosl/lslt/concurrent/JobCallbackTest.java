@@ -0,0 +1,49 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class JobCallbackTest {
+
+    /**
+     * 单线程回调测试, 回调中使用非线程安全的集合
+     */
+    @Test
+    public void pipelinedCallbackTest() {
+        int num = 100000;
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        Map<Integer, Integer> counter = new HashMap<>();
+        Set<String> callbackThreads = new HashSet<>();
+        JobObserver<Integer> observer = jobExecutor.beginJobWithPipelinedCallback((Integer i) -> {
+            callbackThreads.add(Thread.currentThread().getName());
+            counter.merge(i % 10, 1, Integer::sum);
+        }, "pipelined callback test", 64);
+        for(int i = 0; i< num; i++){
+            int finalI = i;
+            jobExecutor.submitWithJobObserver(() -> finalI, observer);
+        }
+        jobExecutor.awaitComplete(observer);
+        assert num == observer.getCompleteCount();
+        assert 1 == callbackThreads.size();
+        assert counter.values().stream().allMatch(c -> c == num / 10);
+
+        List<Integer> sink = new ArrayList<>();
+        AtomicInteger batches = new AtomicInteger();
+        JobObserver<Integer> batchObserver = jobExecutor.beginJobWithBatchCallback((List<Integer> batch) -> {
+            batches.getAndIncrement();
+            sink.addAll(batch);
+        }, "batch callback test", 1024);
+        jobExecutor.submitAll(IntStream.range(0, num).boxed(), i -> i, batchObserver);
+        jobExecutor.awaitComplete(batchObserver);
+        assert num == sink.size() && num == batchObserver.getCompleteCount();
+        assert batches.get() < num;
+    }
+}
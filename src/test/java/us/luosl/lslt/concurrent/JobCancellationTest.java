@@ -0,0 +1,65 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class JobCancellationTest {
+
+    /**
+     * 快速失败测试, 错误数达到阈值后取消 job, 其余任务计为取消
+     */
+    @Test
+    public void failFastTest() {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<?> observer = jobExecutor.beginJob("fail fast test").setFailFast(3);
+        int taskSize = 10000;
+        for(int i = 0; i < taskSize; i++){
+            int finalI = i;
+            jobExecutor.submitWithJobObserver(() -> {
+                if(finalI >= 100 && finalI < 110) throw new RuntimeException("error " + finalI);
+                try {
+                    TimeUnit.MICROSECONDS.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, observer);
+        }
+        jobExecutor.awaitComplete(observer, e -> {});
+        JobSnapshot snapshot = observer.snapshot();
+        assert observer.isCancelled();
+        assert snapshot.getErrorCount() >= 3 && snapshot.getErrorCount() <= 10;
+        assert snapshot.getCancelledCount() > taskSize / 2;
+        assert taskSize == snapshot.getFinishedCount();
+    }
+
+    /**
+     * 正在执行的任务协作取消
+     * @throws Exception
+     */
+    @Test
+    public void cooperativeCancelTest() throws Exception {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<?> cooperative = jobExecutor.beginJob("cooperative cancel test");
+        CountDownLatch started = new CountDownLatch(4);
+        try{
+            for(int i = 0; i < 4; i++){
+                jobExecutor.submitWithJobObserver(() -> {
+                    started.countDown();
+                    while(true){
+                        cooperative.checkCancelled();
+                        Thread.yield();
+                    }
+                }, cooperative);
+            }
+            assert started.await(5, TimeUnit.SECONDS);
+            assert cooperative.cancel();
+            JobSummary summary = jobExecutor.awaitCompleteAsync(cooperative).toCompletableFuture()
+                    .get(5, TimeUnit.SECONDS);
+            assert 4 == summary.getCancelledCount() && 0 == summary.getErrorCount();
+        }finally {
+            jobExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+public class JobExecutorJmxTest {
+
+    /**
+     * JMX 与 Prometheus 指标测试, 以及拒绝计数
+     * @throws Exception Exception
+     */
+    @Test
+    public void metricsExporterTest() throws Exception {
+        JobExecutor jobExecutor = JobExecutor.create(3, 3).setName("metrics \"test\"").enableJmx();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(8);
+        CountDownLatch blocked = new CountDownLatch(2);
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer i) -> { }, "metrics job");
+        observer.addTaskListener((result, error) -> completed.countDown());
+        try(PrometheusExporter exporter = PrometheusExporter.of(jobExecutor).start(0)){
+            // 先执行完 8 个任务, 再由 2 个任务占住线程
+            for(int i = 0; i < 10; i++){
+                if(i == 8){
+                    assert completed.await(5, TimeUnit.SECONDS);
+                }
+                int finalI = i;
+                jobExecutor.submitWithJobObserver(() -> {
+                    if(finalI >= 8){
+                        blocked.countDown();
+                        release.await();
+                    }
+                    return finalI;
+                }, observer);
+            }
+            assert blocked.await(5, TimeUnit.SECONDS);
+            assert jobExecutor.getActiveJobs().contains(observer) && 1 == jobExecutor.getActiveJobCount();
+            assert 2 == jobExecutor.getActiveThreadCount() && 0 == jobExecutor.getQueueDepth();
+
+            String text = exporter.scrape();
+            String executorLabel = "executor=\"metrics \\\"test\\\"\"";
+            assert text.contains("# TYPE lslt_executor_active_threads gauge");
+            assert text.contains("lslt_executor_active_threads{" + executorLabel + "} 2\n");
+            assert text.contains("lslt_executor_rejected_total{" + executorLabel + "} 0\n");
+            assert text.contains("lslt_job_running{" + executorLabel + ",job=\"metrics job\"} 2\n");
+            assert text.contains("lslt_job_completed_total{" + executorLabel + ",job=\"metrics job\"} 8\n");
+            assert text.contains("lslt_job_throughput{" + executorLabel + ",job=\"metrics job\"}");
+            // 任务总数未知时不输出 ETA
+            assert !text.contains("lslt_job_eta_seconds{");
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    String.format("http://127.0.0.1:%d/metrics", exporter.getPort())).openConnection();
+            assert 200 == connection.getResponseCode();
+            assert connection.getContentType().startsWith("text/plain");
+            try(InputStream is = connection.getInputStream()){
+                String body = new String(readAll(is), StandardCharsets.UTF_8);
+                assert body.contains("lslt_job_submitted_total{" + executorLabel + ",job=\"metrics job\"} 10\n");
+            }
+
+            ObjectName executorName = jobExecutor.getObjectName();
+            assert 2 == (Integer) server.getAttribute(executorName, "ActiveThreadCount");
+            assert 1 == (Integer) server.getAttribute(executorName, "ActiveJobCount");
+            ObjectName jobName = jobExecutor.getJobObjectName(observer);
+            assert "metrics job".equals(server.getAttribute(jobName, "JobName"));
+            assert 8L == (Long) server.getAttribute(jobName, "CompleteCount");
+            assert 2L == (Long) server.getAttribute(jobName, "RunningCount");
+            assert -1L == (Long) server.getAttribute(jobName, "EtaSeconds");
+
+            release.countDown();
+            jobExecutor.awaitComplete(observer);
+            // job 结束时的清理在结束 job 的线程中执行, 线程池终止后一定已经完成
+            jobExecutor.shutdown();
+            assert jobExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            assert jobExecutor.getActiveJobs().isEmpty();
+            assert !server.isRegistered(jobName);
+            assert !exporter.scrape().contains("lslt_job_running{");
+        } finally {
+            release.countDown();
+            jobExecutor.disableJmx();
+        }
+        assert !server.isRegistered(new ObjectName("us.luosl.lslt:type=JobExecutor,name=\"metrics \\\"test\\\"\""));
+
+        // 非阻塞拒绝策略下的拒绝计数
+        JobExecutor rejecting = JobExecutor.create(new ThreadPoolExecutor(1, 1, 1L, TimeUnit.MINUTES,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy()));
+        CountDownLatch block = new CountDownLatch(1);
+        JobObserver<?> rejectingJob = rejecting.beginJob();
+        rejecting.submitWithJobObserver(() -> {
+            try {
+                block.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, rejectingJob);
+        try{
+            rejecting.submitWithJobObserver(() -> { }, rejectingJob);
+            assert false;
+        }catch (RejectedExecutionException e){
+            // 唯一的线程被占用
+        }
+        assert 1 == rejecting.getRejectedCount();
+        block.countDown();
+        rejecting.awaitComplete(rejectingJob, e -> { });
+
+        // 批次被拒绝时两种计数方式都按 Runnable 计一次
+        rejecting.shutdown();
+        JobExecutor rejectingService = JobExecutor.create(Executors.newSingleThreadExecutor());
+        rejectingService.shutdown();
+        for(JobExecutor executor : Arrays.asList(rejecting, rejectingService)){
+            JobObserver<Integer> batchJob = executor.beginJobWithCallback((Integer i) -> { }, "rejected batch");
+            try{
+                executor.submitAll(IntStream.range(0, 100).boxed(), i -> i, batchJob);
+                assert false;
+            }catch (RejectedExecutionException e){
+                // 线程池已关闭
+            }
+            assert batchJob.getErrorCount() > 1;
+        }
+        assert 2 == rejecting.getRejectedCount();
+        assert 1 == rejectingService.getRejectedCount();
+    }
+
+    /**
+     * 没有名称的 job 以空字符串注册与输出, 结束后从活跃 job 中移除
+     */
+    @Test
+    public void unnamedJobTest() {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        JobExecutor jobExecutor = JobExecutor.create(2, 2).setName("unnamed").enableJmx(server);
+        try{
+            JobObserver<?> unnamed = jobExecutor.beginJob(null);
+            JobObserver<Integer> unnamedCallback = jobExecutor.beginJobWithCallback((Integer i) -> { }, null);
+            assert null != jobExecutor.getJobObjectName(unnamed);
+            assert "\"\"".equals(jobExecutor.getJobObjectName(unnamedCallback).getKeyProperty("name"));
+            assert PrometheusExporter.of(jobExecutor).scrape().contains("job=\"\"");
+            jobExecutor.submitWithJobObserver(() -> { }, unnamed);
+            jobExecutor.awaitComplete(unnamed);
+            jobExecutor.awaitComplete(unnamedCallback);
+            assert jobExecutor.getActiveJobs().isEmpty();
+            assert null == jobExecutor.getJobObjectName(unnamed);
+        }finally {
+            jobExecutor.shutdown();
+        }
+    }
+
+    /**
+     * job 的 MBean 注册失败时 job 照常执行, 结束后从活跃 job 中移除
+     * @throws Exception Exception
+     */
+    @Test
+    public void registerFailureTest() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        JobExecutor jobExecutor = JobExecutor.create(2, 2).setName("conflict").enableJmx(server);
+        try{
+            // 占用第一个 job 将要使用的 ObjectName
+            ObjectName taken = new ObjectName("us.luosl.lslt:type=Job,executor=\"conflict\",name=\"taken\",id=0");
+            server.registerMBean(new StandardMBean(new JobMetrics(new JobObserver<>("other")), JobMXBean.class, true),
+                    taken);
+
+            JobObserver<?> observer = jobExecutor.beginJob("taken");
+            assert null == jobExecutor.getJobObjectName(observer);
+            assert jobExecutor.getActiveJobs().contains(observer);
+            jobExecutor.submitWithJobObserver(() -> { }, observer);
+            jobExecutor.awaitComplete(observer);
+            assert 1 == observer.getCompleteCount();
+            assert !jobExecutor.getActiveJobs().contains(observer);
+        }finally {
+            jobExecutor.shutdown();
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while((n = is.read(buffer)) > 0){
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
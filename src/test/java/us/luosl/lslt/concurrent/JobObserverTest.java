@@ -0,0 +1,85 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobObserverTest {
+
+    /**
+     * 异常收集测试, 超出容量的异常只计数
+     */
+    @Test
+    public void errorCapacityTest() {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<?> observer = jobExecutor.beginJob("error capacity test").setErrorCapacity(10);
+        int taskSize = 1000;
+        for(int i =0; i<taskSize; i++){
+            int finalI = i;
+            jobExecutor.submitWithJobObserver(() -> {
+                if(finalI % 2 == 0) throw new RuntimeException("error " + finalI);
+            }, observer);
+        }
+        AtomicInteger handled = new AtomicInteger();
+        jobExecutor.awaitComplete(observer, e -> handled.getAndIncrement());
+        assert 10 == handled.get();
+        assert taskSize / 2 == observer.getErrorCount();
+        assert taskSize / 2 - 10 == observer.getDroppedErrorCount();
+        assert taskSize / 2 == observer.getCompleteCount();
+        assert 0 == observer.getRunningCount() && 0 == observer.getAwaitingCount();
+    }
+
+    /**
+     * 快照一致性测试, 任意时刻的快照中各计数之和都应等于提交数
+     */
+    @Test
+    public void snapshotTest() {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<?> observer = jobExecutor.beginJob("snapshot test");
+        int taskSize = 50000;
+        for(int i =0; i<taskSize; i++){
+            jobExecutor.submitWithJobObserver(() -> {}, observer);
+            if(i % 1000 == 0){
+                JobSnapshot snapshot = observer.snapshot();
+                assert snapshot.getAwaitingCount() >= 0 && snapshot.getRunningCount() >= 0;
+                assert snapshot.getSubmitCount() == snapshot.getFinishedCount()
+                        + snapshot.getRunningCount() + snapshot.getAwaitingCount();
+            }
+        }
+        jobExecutor.awaitComplete(observer);
+        JobSnapshot snapshot = observer.snapshot();
+        assert taskSize == snapshot.getSubmitCount() && taskSize == snapshot.getCompleteCount();
+        assert 0 == snapshot.getRunningCount() && 0 == snapshot.getAwaitingCount();
+    }
+
+    /**
+     * 非阻塞等待 job 结束与任务监听器测试
+     * @throws Exception
+     */
+    @Test
+    public void completionStageTest() throws Exception {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback(null, "completion stage test");
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        observer.addTaskListener((result, error) -> {
+            if(null == error) succeeded.getAndIncrement(); else failed.getAndIncrement();
+        });
+        for(int i = 0; i < 1000; i++){
+            int finalI = i;
+            jobExecutor.submitWithJobObserver(() -> {
+                if(finalI % 100 == 0) throw new RuntimeException("error " + finalI);
+                return finalI;
+            }, observer);
+        }
+        CompletableFuture<String> chained = jobExecutor.awaitCompleteAsync(observer)
+                .thenApply(summary -> summary.getCompleteCount() + "/" + summary.getErrorCount())
+                .toCompletableFuture();
+        assert "990/10".equals(chained.get(10, TimeUnit.SECONDS));
+        JobSummary summary = observer.getCompletionStage().toCompletableFuture().get();
+        assert 1000 == summary.getSubmitCount() && 10 == summary.getErrors().size() && !summary.isSuccess();
+        assert 990 == succeeded.get() && 10 == failed.get();
+    }
+}
@@ -0,0 +1,57 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class JobStatisticsTest {
+
+    /**
+     * 统计在 job 结束后输出汇总并停止
+     * @throws InterruptedException
+     */
+    @Test
+    public void statisticsCompleteTest() throws InterruptedException {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        int jobSize = 20;
+        CountDownLatch summaries = new CountDownLatch(jobSize);
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        for(int j = 0; j < jobSize; j++){
+            JobObserver<?> observer = jobExecutor.beginJob();
+            JobStatistics.create(observer).setInterval(Duration.ofSeconds(1)).setStatInfoFormat(new JobStatistics.StatInfoFormat() {
+                @Override
+                public String mkStatInfo(Duration interval, Long allCount, long intervalCompleteCount, JobObserver<?> jobObserver) {
+                    return jobObserver.snapshot().toString();
+                }
+
+                @Override
+                public String mkSummaryInfo(JobSnapshot snapshot) {
+                    return "summary " + snapshot.getCompleteCount();
+                }
+
+                @Override
+                public void print(String statInfo) {
+                    lines.add(statInfo);
+                    if(statInfo.startsWith("summary ")){
+                        summaries.countDown();
+                    }
+                }
+            }).startStat();
+            for(int i = 0; i < 100; i++){
+                jobExecutor.submitWithJobObserver(() -> {}, observer);
+            }
+            jobExecutor.awaitComplete(observer);
+            assert JobStatus.COMPLETE == observer.getStatus();
+        }
+        assert summaries.await(5, TimeUnit.SECONDS);
+        assert lines.stream().filter(l -> l.equals("summary 100")).count() == jobSize;
+        long statThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().endsWith("统计线程")).count();
+        assert 0 == statThreads;
+    }
+}
@@ -0,0 +1,41 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    /**
+     * 耗时直方图测试
+     */
+    @Test
+    public void latencyHistogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1; i <= 10000; i++){
+            histogram.record(i * 1000);
+        }
+        assert 10000 == histogram.getCount();
+        assert 10_000_000L == histogram.getMax();
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        assert Math.abs(p50 - 5_000_000L) <= 5_000_000L / 8;
+        assert Math.abs(p99 - 9_900_000L) <= 9_900_000L / 8;
+
+        LatencyHistogram earlier = histogram.copy();
+        histogram.record(20_000_000L);
+        LatencyHistogram delta = histogram.delta(earlier);
+        assert 1 == delta.getCount() && 20_000_000L == delta.getMax();
+        delta.merge(earlier);
+        assert 10001 == delta.getCount();
+        histogram.reset();
+        assert 0 == histogram.getCount() && 0 == histogram.getMax();
+
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<?> observer = jobExecutor.beginJob("histogram test");
+        for(int i = 0; i < 1000; i++){
+            jobExecutor.submitWithJobObserver(() -> {}, observer);
+        }
+        jobExecutor.awaitComplete(observer);
+        assert 1000 == observer.getQueueWaitHistogram().getCount();
+        assert 1000 == observer.getExecutionHistogram().getCount();
+    }
+}
@@ -0,0 +1,64 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+import us.luosl.lslt.lang.CollectionUtils;
+import us.luosl.lslt.lang.LongList;
+import us.luosl.lslt.lang.LongLongMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+public class ReduceJobTest {
+
+    /**
+     * 归约 job 测试
+     */
+    @Test
+    public void reduceJobTest() {
+        int num = 100000;
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        ReduceJobObserver<Integer, Map<Integer, Long>> observer = jobExecutor.beginReduceJob(
+                Collectors.groupingBy((Integer i) -> i % 10, Collectors.counting()), "reduce test");
+        jobExecutor.submitAll(IntStream.range(0, num).boxed(), i -> i, observer);
+        Map<Integer, Long> result = jobExecutor.awaitResult(observer);
+        assert 10 == result.size() && result.values().stream().allMatch(c -> c == num / 10);
+
+        ReduceJobObserver<Integer, long[]> sum = jobExecutor.beginReduceJob(() -> new long[1],
+                (long[] acc, Integer i) -> acc[0] += i, (a, b) -> { a[0] += b[0]; return a; }, "sum test");
+        for(int i = 0; i < num; i++){
+            int finalI = i;
+            jobExecutor.submitWithJobObserver(() -> {
+                if(finalI == 0) throw new RuntimeException("skip");
+                return finalI;
+            }, sum);
+        }
+        long total = jobExecutor.awaitResult(sum, e -> {})[0];
+        assert (long) num * (num - 1) / 2 == total;
+
+        // 线程用完即退出时(与每个任务一个虚拟线程类似)局部结果按段复用, 结果不受线程数影响
+        int shortLivedNum = 20000;
+        JobExecutor shortLived = JobExecutor.create(new ThreadPoolExecutor(0, 16, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy()));
+        ReduceJobObserver<Integer, Long> count = shortLived.beginReduceJob(Collectors.counting(), "short lived");
+        shortLived.submitAll(IntStream.range(0, shortLivedNum).boxed(), i -> i, count);
+        assert shortLivedNum == shortLived.awaitResult(count);
+
+        // 基本类型集合的 Collector 作为归约 job 的 collector, 每个线程局部累加, job 结束时合并
+        ReduceJobObserver<Long, LongLongMap> countJob = jobExecutor.beginReduceJob(
+                CollectionUtils.countingBy((Long id) -> id % 100));
+        jobExecutor.submitAll(LongStream.range(0, num).boxed(), id -> id, countJob);
+        LongLongMap counts = jobExecutor.awaitResult(countJob);
+        assert 100 == counts.size() && num / 100 == counts.get(42L);
+        ReduceJobObserver<Long, LongList> listJob = jobExecutor.beginReduceJob(CollectionUtils.toLongList());
+        jobExecutor.submitAll(LongStream.range(0, num).boxed(), id -> id, listJob);
+        LongList ids = jobExecutor.awaitResult(listJob);
+        ids.sort();
+        assert Arrays.equals(LongStream.range(0, num).toArray(), ids.toArray());
+    }
+}
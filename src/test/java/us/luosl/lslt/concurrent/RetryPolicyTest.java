@@ -0,0 +1,153 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class RetryPolicyTest {
+
+    /**
+     * 重试测试, 可重试的异常按退避重新执行, 不可重试的异常直接计为错误
+     */
+    @Test
+    public void retryTest() {
+        JobExecutor jobExecutor = JobExecutor.create(2, 2);
+        Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        JobObserver<Integer> jobObserver = jobExecutor.beginJobWithCallback((Integer i) -> { }, "retry")
+                .setRetryPolicy(RetryPolicy.of(3).setBackoff(5, 50, TimeUnit.MILLISECONDS)
+                        .retryOn(IllegalStateException.class));
+        jobExecutor.submitAll(IntStream.range(0, 30).boxed(), i -> {
+            int attempt = attempts.computeIfAbsent(i, k -> new AtomicInteger()).incrementAndGet();
+            if(i % 3 == 0 && attempt < 3) throw new IllegalStateException("busy " + i);
+            if(i % 3 == 1) throw new IllegalStateException("always busy " + i);
+            if(i == 29) throw new IllegalArgumentException("bad " + i);
+            return i;
+        }, jobObserver, 4);
+        List<Throwable> errors = new ArrayList<>();
+        jobExecutor.awaitComplete(jobObserver, errors::add);
+        JobSnapshot snapshot = jobObserver.snapshot();
+        assert 11 == errors.size();
+        assert 30 == snapshot.getSubmitCount();
+        // 0,3..27 重试两次后成功; 1,4..28 重试两次后失败; 29 不可重试
+        assert 19 == snapshot.getCompleteCount();
+        assert 11 == snapshot.getErrorCount();
+        assert 40 == snapshot.getRetryCount();
+        assert 0 == snapshot.getAwaitingCount() && 0 == snapshot.getRunningCount();
+        assert 1 == attempts.get(29).get() && 3 == attempts.get(28).get();
+    }
+
+    /**
+     * 重试到期时线程池队列已满: 重试稍后再试, 不阻塞共享调度线程
+     * @throws Exception Exception
+     */
+    @Test
+    public void retryWithFullQueueTest() throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(1), new BlockingRejectedExecutionHandler());
+        JobExecutor jobExecutor = JobExecutor.create(pool);
+        try{
+            JobObserver<Integer> retrying = jobExecutor.beginJobWithCallback((Integer i) -> { }, "retry")
+                    .setRetryPolicy(RetryPolicy.of(2).setBackoff(100, 100, TimeUnit.MILLISECONDS));
+            CountDownLatch failed = new CountDownLatch(1);
+            CountDownLatch retried = new CountDownLatch(1);
+            submitFailingOnce(jobExecutor, retrying, failed, retried);
+            failed.await();
+
+            // 占住唯一的线程并填满队列
+            JobObserver<?> blocking = jobExecutor.beginJob("blocking");
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch blocked = new CountDownLatch(1);
+            jobExecutor.submitWithJobObserver(() -> {
+                blocked.countDown();
+                awaitQuietly(release);
+            }, blocking);
+            blocked.await();
+            jobExecutor.submitWithJobObserver(() -> { }, blocking);
+            assert 0 == pool.getQueue().remainingCapacity();
+
+            assert !retried.await(300, TimeUnit.MILLISECONDS);
+            assertSchedulerResponsive();
+            release.countDown();
+            assert retried.await(5, TimeUnit.SECONDS);
+            jobExecutor.awaitComplete(retrying);
+            JobSnapshot snapshot = retrying.snapshot();
+            assert 1 == snapshot.getCompleteCount() && 0 == snapshot.getErrorCount();
+            jobExecutor.awaitComplete(blocking);
+            assert 0 == jobExecutor.getRejectedCount();
+        }finally {
+            jobExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 重试与普通提交一样受 job 的在途许可限制, 等待许可时不阻塞共享调度线程
+     * @throws Exception Exception
+     */
+    @Test
+    public void retryWaitsForCreditTest() throws Exception {
+        JobExecutor jobExecutor = JobExecutor.create(2, 2);
+        try{
+            JobObserver<Integer> job = jobExecutor.beginJobWithCallback((Integer i) -> { }, "retry credit")
+                    .setRetryPolicy(RetryPolicy.of(2).setBackoff(100, 100, TimeUnit.MILLISECONDS));
+            job.setMaxInFlight(1);
+            CountDownLatch failed = new CountDownLatch(1);
+            CountDownLatch retried = new CountDownLatch(1);
+            submitFailingOnce(jobExecutor, job, failed, retried);
+            failed.await();
+
+            // 失败的任务结束后归还许可, 由下一个任务占住, 线程池仍有空闲线程
+            CountDownLatch release = new CountDownLatch(1);
+            jobExecutor.submitAll(Stream.of(1), i -> {
+                awaitQuietly(release);
+                return i;
+            }, job);
+
+            assert !retried.await(300, TimeUnit.MILLISECONDS);
+            assertSchedulerResponsive();
+            release.countDown();
+            assert retried.await(5, TimeUnit.SECONDS);
+            jobExecutor.awaitComplete(job);
+            JobSnapshot snapshot = job.snapshot();
+            assert 2 == snapshot.getCompleteCount() && 0 == snapshot.getErrorCount() && 1 == snapshot.getRetryCount();
+        }finally {
+            jobExecutor.shutdownNow();
+        }
+    }
+
+    private static void submitFailingOnce(JobExecutor jobExecutor, JobObserver<Integer> job,
+                                          CountDownLatch failed, CountDownLatch retried){
+        AtomicInteger attempts = new AtomicInteger();
+        jobExecutor.submitAll(Stream.of(0), i -> {
+            if(attempts.incrementAndGet() == 1){
+                failed.countDown();
+                throw new IllegalStateException("first attempt");
+            }
+            retried.countDown();
+            return i;
+        }, job);
+    }
+
+    private static void assertSchedulerResponsive() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        SharedScheduler.get().execute(ran::countDown);
+        assert ran.await(1, TimeUnit.SECONDS);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch){
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
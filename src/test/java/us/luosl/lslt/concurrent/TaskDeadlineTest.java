@@ -0,0 +1,65 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TaskDeadlineTest {
+
+    /**
+     * 任务超时测试, 卡住的任务(即使不响应中断)不会拖住 job
+     * @throws Exception
+     */
+    @Test
+    public void taskTimeoutTest() throws Exception {
+        JobExecutor jobExecutor = JobExecutor.create(4, 4);
+        JobObserver<?> observer = jobExecutor.beginJob("timeout test").setTaskTimeout(100, TimeUnit.MILLISECONDS);
+        CountDownLatch release = new CountDownLatch(1);
+        try{
+            for(int i = 0; i < 20; i++){
+                int n = i;
+                jobExecutor.submitWithJobObserver(() -> {
+                    if(n == 0){
+                        // 不响应中断的任务
+                        boolean released = false;
+                        while(!released){
+                            try {
+                                release.await();
+                                released = true;
+                            } catch (InterruptedException ignored) {
+                            }
+                        }
+                    }else if(n == 1){
+                        try {
+                            TimeUnit.MINUTES.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }, observer);
+            }
+            jobExecutor.submitWithTimeout(() -> {
+                try {
+                    TimeUnit.SECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, observer, 50, TimeUnit.MILLISECONDS);
+            // 超时的任务仍在执行时 job 也应在期限内结束
+            JobSummary summary = jobExecutor.awaitCompleteAsync(observer).toCompletableFuture()
+                    .get(5, TimeUnit.SECONDS);
+            JobSnapshot snapshot = summary.getSnapshot();
+            assert 3 == snapshot.getTimeoutCount();
+            assert 3 == snapshot.getErrorCount();
+            assert 18 == snapshot.getCompleteCount();
+            assert 0 == snapshot.getRunningCount() && 0 == snapshot.getAwaitingCount();
+            assert 3 == summary.getErrors().size();
+            assert summary.getErrors().stream().allMatch(e -> e instanceof TimeoutException);
+        }finally {
+            release.countDown();
+            jobExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreadExecutorTest {
+
+    /**
+     * 虚拟线程测试, 不支持虚拟线程的环境下退化为普通线程池
+     */
+    @Test
+    public void virtualThreadTest() {
+        JobExecutor jobExecutor = JobExecutor.createVirtual(16);
+        JobObserver<?> observer = jobExecutor.beginJob("virtual thread test");
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        int taskSize = 1000;
+        for(int i = 0; i < taskSize; i++){
+            jobExecutor.submitWithJobObserver(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    // 模拟阻塞 I/O
+                    TimeUnit.MILLISECONDS.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+            }, observer);
+        }
+        jobExecutor.awaitComplete(observer);
+        assert taskSize == observer.getCompleteCount();
+        assert maxActive.get() <= 16;
+    }
+}
@@ -0,0 +1,45 @@
+package us.luosl.lslt.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkStealingExecutorTest {
+
+    /**
+     * work-stealing 测试, 可拆分任务与大量小任务
+     */
+    @Test
+    public void workStealingTest() {
+        int num = 1000000;
+        List<Integer> items = new ArrayList<>(num);
+        for(int i = 0; i< num; i++){
+            items.add(i);
+        }
+        JobExecutor workStealing = JobExecutor.createWorkStealing(4);
+        AtomicInteger ai = new AtomicInteger();
+        JobObserver<Integer> observer = workStealing.beginJobWithCallback((Integer i) -> ai.getAndIncrement());
+        workStealing.submitSplittable(items.spliterator(), i -> {
+            if(i % 1000 == 0) throw new RuntimeException("error " + i);
+            return i;
+        }, observer, 1000);
+        workStealing.awaitComplete(observer, e -> {});
+        assert num == observer.getSubmitCount();
+        assert num / 1000 == observer.getErrorCount();
+        assert num - num / 1000 == ai.get();
+
+        // 任务中提交的子任务计入同一个 job
+        JobObserver<?> nested = workStealing.beginJob("nested test").setMaxInFlight(2);
+        for(int i = 0; i < 100; i++){
+            workStealing.submitWithJobObserver(() -> {
+                for(int j = 0; j < 10; j++){
+                    workStealing.submitWithJobObserver(() -> {}, nested);
+                }
+            }, nested);
+        }
+        workStealing.awaitComplete(nested);
+        assert 1100 == nested.getCompleteCount();
+    }
+}
@@ -0,0 +1,141 @@
+package us.luosl.lslt.lang;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class AsyncFileWriterTest {
+
+    private static final int NUM = 100000;
+
+    private ExecutorService threads;
+    private File output;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        threads = Executors.newFixedThreadPool(4);
+        output = File.createTempFile("async-writer", ".txt");
+        output.deleteOnExit();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        threads.shutdownNow();
+    }
+
+    /**
+     * 多个线程同时写入, 单条记录不会被拆开
+     */
+    @Test
+    public void concurrentWriteTest() throws Exception {
+        try(AsyncFileWriter writer = FileUtils.openAsyncWriter(output, "UTF-8")){
+            runAll(IntStream.range(0, NUM).<Runnable>mapToObj(i -> () -> writer.writeLine("行-" + i)));
+            writer.flush();
+            assert writer.getWrittenBytes() == output.length();
+        }
+        Set<String> expected = IntStream.range(0, NUM).mapToObj(i -> "行-" + i).collect(Collectors.toSet());
+        List<String> lines = readLines();
+        assert NUM == lines.size() && expected.equals(new HashSet<>(lines));
+    }
+
+    /**
+     * 有序模式下按序号输出, 跳过的序号没有输出
+     */
+    @Test
+    public void orderedTest() throws Exception {
+        AsyncFileWriter ordered = AsyncFileWriter.of(output).setCharset("UTF-8").setOrdered(true)
+                .setBufferSize(4096).setSyncPolicy(AsyncFileWriter.SyncPolicy.EVERY_WRITE).open();
+        runAll(IntStream.range(0, NUM).map(i -> NUM - 1 - i).<Runnable>mapToObj(i -> () -> {
+            if(i % 10 == 0){
+                ordered.skip(i);
+            }else{
+                ordered.writeLine(i, String.valueOf(i));
+            }
+        }));
+        ordered.close();
+        List<String> expected = IntStream.range(0, NUM).filter(i -> i % 10 != 0)
+                .mapToObj(String::valueOf).collect(Collectors.toList());
+        assert expected.equals(readLines());
+    }
+
+    /**
+     * 每个线程写一段连续的序号, 段内的记录成批交给 IO 线程, 超过缓冲区的行单独交出
+     */
+    @Test
+    public void orderedRangesTest() throws Exception {
+        AsyncFileWriter ranges = AsyncFileWriter.of(output).setOrdered(true).setBufferSize(1024).open();
+        String longLine = String.join("", Collections.nCopies(2000, "x"));
+        runAll(IntStream.range(0, NUM / 1000).map(i -> NUM - (i + 1) * 1000).<Runnable>mapToObj(start -> () -> {
+            for(int i = start; i < start + 1000; i++){
+                ranges.writeLine(i, i == 5000 ? longLine : String.valueOf(i));
+            }
+        }));
+        ranges.close();
+        List<String> lines = readLines();
+        assert NUM == lines.size() && longLine.equals(lines.get(5000));
+        assert IntStream.range(0, NUM).filter(i -> i != 5000).allMatch(i -> String.valueOf(i).equals(lines.get(i)));
+    }
+
+    @Test
+    public void duplicateSequenceTest() throws IOException {
+        AsyncFileWriter duplicate = AsyncFileWriter.of(output).setOrdered(true).open();
+        duplicate.writeLine(0, "a");
+        duplicate.writeLine(1, "b");
+        duplicate.writeLine(1, "b");
+        try{
+            duplicate.close();
+            assert false;
+        }catch (IOException e){
+            assert e.getMessage().contains("duplicate sequence 1");
+        }
+    }
+
+    /**
+     * 序号缺失时关闭失败, 等待中的行仍然按序号写出
+     */
+    @Test
+    public void missingSequenceTest() throws IOException {
+        AsyncFileWriter gap = AsyncFileWriter.of(output).setOrdered(true).open();
+        gap.writeLine(0, "a");
+        gap.writeLine(2, "c");
+        gap.writeLine(3, "d");
+        try{
+            gap.close();
+            assert false;
+        }catch (IOException e){
+            assert e.getMessage().contains("missing sequence 1");
+        }
+        assert Arrays.asList("a", "c", "d").equals(readLines());
+    }
+
+    /**
+     * 在线程池中执行全部任务并等待结束, 任务中的异常会被抛出
+     */
+    private void runAll(Stream<Runnable> tasks) throws ExecutionException, InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        tasks.forEach(task -> futures.add(threads.submit(task)));
+        for(Future<?> future : futures){
+            future.get();
+        }
+    }
+
+    private List<String> readLines() throws IOException {
+        return FileUtils.asLineStream(output, "UTF-8").collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,90 @@
+package us.luosl.lslt.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ByteFieldTokenizerTest {
+
+    /**
+     * 按字节读取的行与按字符串拆分的结果一致, 包括 \r\n 换行与空字段
+     * @throws IOException IOException
+     */
+    @Test
+    public void byteLineTest() throws IOException {
+        File data = File.createTempFile("byte-line", ".txt");
+        data.deleteOnExit();
+        List<String> lines = new ArrayList<>();
+        try(PrintWriter writer = new PrintWriter(data, "UTF-8")){
+            Random random = new Random(7);
+            for(int i = 0; i < 50000; i++){
+                String line = random.nextInt() + " " + random.nextLong() + " 字段-" + i + " " + (i % 7 == 0 ? "" : "x");
+                lines.add(line);
+                writer.print(line + (i % 5 == 0 ? "\r\n" : "\n"));
+            }
+        }
+        long[] expected = new long[3];
+        for(String line : lines){
+            String[] fields = line.split(" ", -1);
+            expected[0] += Integer.parseInt(fields[0]);
+            expected[1] += Long.parseLong(fields[1]);
+            expected[2] += fields.length;
+        }
+        long[] actual = new long[3];
+        AtomicInteger index = new AtomicInteger();
+        ByteFieldTokenizer tokenizer = new ByteFieldTokenizer();
+        ByteSlice field = new ByteSlice();
+        FileUtils.forEachByteLine(data, "UTF-8", line -> {
+            tokenizer.reset(line, (byte) ' ');
+            actual[0] += tokenizer.nextInt();
+            actual[1] += tokenizer.nextLong();
+            tokenizer.skip();
+            tokenizer.skip();
+            assert !tokenizer.hasNext();
+            actual[2] += line.fieldCount((byte) ' ');
+            assert line.field(2, (byte) ' ', field).toString().equals("字段-" + index.get());
+            assert null == line.field(4, (byte) ' ', field);
+            assert line.toString().equals(lines.get(index.getAndIncrement()));
+        });
+        assert lines.size() == index.get();
+        assert Arrays.equals(expected, actual);
+    }
+
+    /**
+     * 边界值与溢出, 非法数字抛出 NumberFormatException
+     */
+    @Test
+    public void parseNumberTest() {
+        byte[] bytes = "-2147483648 2147483648 +12 - 1a".getBytes(StandardCharsets.US_ASCII);
+        ByteSlice slice = new ByteSlice(bytes, 0, bytes.length, StandardCharsets.US_ASCII);
+        ByteFieldTokenizer tokenizer = new ByteFieldTokenizer();
+        tokenizer.reset(slice, (byte) ' ');
+        assert Integer.MIN_VALUE == tokenizer.nextInt();
+        ByteSlice overflow = tokenizer.next();
+        assert 2147483648L == overflow.parseLong();
+        assert overflow.contentEquals("2147483648");
+        int failed = 0;
+        try{
+            overflow.parseInt();
+        }catch (NumberFormatException e){
+            failed++;
+        }
+        assert 12 == tokenizer.nextInt();
+        while(tokenizer.hasNext()){
+            try{
+                tokenizer.nextInt();
+            }catch (NumberFormatException e){
+                failed++;
+            }
+        }
+        assert 3 == failed;
+    }
+}
@@ -0,0 +1,38 @@
+package us.luosl.lslt.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+public class CollectionUtilsTest {
+
+    /**
+     * 集合, 并行流与基本类型数组的拼接结果与 Collectors.joining 一致
+     * @throws IOException IOException
+     */
+    @Test
+    public void mkStrTest() throws IOException {
+        int num = 200000;
+        List<Integer> ids = IntStream.range(0, num).boxed().collect(Collectors.toList());
+        String expected = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        assert expected.equals(CollectionUtils.mkStr(ids, ",").orElse(null));
+        assert expected.equals(CollectionUtils.mkStr(ids.parallelStream(), ",").orElse(null));
+        assert expected.equals(CollectionUtils.mkStr(IntStream.range(0, num).parallel(), ",").orElse(null));
+        assert expected.equals(CollectionUtils.mkStr(IntStream.range(0, num).toArray(), ",").orElse(null));
+        assert expected.equals(CollectionUtils.mkStr(LongStream.range(0, num).toArray(), ",").orElse(null));
+        assert ("(" + expected + ")").equals(CollectionUtils.mkStr(ids.parallelStream(), "(", ",", ")"));
+        assert "in (-1, 9223372036854775807)".equals(
+                CollectionUtils.mkStr(new long[]{-1L, Long.MAX_VALUE}, "in (", ", ", ")"));
+        assert "()".equals(CollectionUtils.mkStr(new int[0], "(", ",", ")"));
+        assert !CollectionUtils.mkStr(new ArrayList<String>(), ",").isPresent();
+        assert !CollectionUtils.mkStr(LongStream.empty(), ",").isPresent();
+        assert "a|null".equals(CollectionUtils.mkStr(new String[]{"a", null}, "|").orElse(null));
+        assert expected.equals(CollectionUtils.appendStr(new StringWriter(), ids, ",").toString());
+    }
+}
@@ -0,0 +1,48 @@
+package us.luosl.lslt.lang;
+
+import org.junit.jupiter.api.Test;
+import us.luosl.lslt.concurrent.JobExecutor;
+import us.luosl.lslt.concurrent.JobObserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class MappedLineSpliteratorTest {
+
+    /**
+     * 内存映射按行拆分测试, 并行流与 work-stealing 拆分都能得到完整且不重复的行
+     */
+    @Test
+    public void mappedLineSpliteratorTest() throws IOException {
+        File data = File.createTempFile("mapped-data", ".txt");
+        data.deleteOnExit();
+        List<String> expected = new ArrayList<>();
+        try(PrintWriter writer = new PrintWriter(data, "UTF-8")){
+            for(int i = 0; i < 100000; i++){
+                String line = "行-" + i + "," + (i * 31 % 1000);
+                expected.add(line);
+                writer.print(line + (i % 3 == 0 ? "\r\n" : "\n"));
+            }
+        }
+        Spliterator<String> spliterator = FileUtils.mappedLineSpliterator(data, "UTF-8");
+        assert spliterator.estimateSize() > 50000 && spliterator.estimateSize() < 200000;
+        assert !spliterator.hasCharacteristics(Spliterator.SIZED) && !spliterator.hasCharacteristics(Spliterator.SUBSIZED);
+        assert expected.equals(FileUtils.asMappedLineStream(data, "UTF-8").parallel().collect(Collectors.toList()));
+
+        JobExecutor workStealing = JobExecutor.createWorkStealing(4);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        JobObserver<String> observer = workStealing.beginJobWithCallback((String line) -> seen.add(line));
+        workStealing.submitSplittable(FileUtils.mappedLineSpliterator(data, "UTF-8"), line -> line, observer);
+        workStealing.awaitComplete(observer);
+        assert expected.size() == observer.getCompleteCount();
+        assert seen.equals(new HashSet<>(expected));
+    }
+}
@@ -0,0 +1,262 @@
+package us.luosl.lslt.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class PrimitiveCollectionsTest {
+
+    /**
+     * 随机的插入, 累加与删除交替进行, 结果与 HashMap/HashSet 一致
+     */
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(11);
+        LongLongMap longMap = new LongLongMap();
+        IntIntMap intMap = new IntIntMap(4);
+        LongSet longSet = new LongSet();
+        Map<Long, Long> expectedLongMap = new HashMap<>();
+        Map<Integer, Integer> expectedIntMap = new HashMap<>();
+        Set<Long> expectedSet = new HashSet<>();
+        for(int i = 0; i < 300000; i++){
+            // key 范围较小, 使插入, 累加与删除交替发生, 包含 0 与负数
+            long key = random.nextInt(5000) - 2500;
+            int op = random.nextInt(4);
+            if(op == 0){
+                assert expectedLongMap.containsKey(key) == longMap.remove(key);
+                expectedLongMap.remove(key);
+                assert expectedIntMap.containsKey((int) key) == intMap.remove((int) key);
+                expectedIntMap.remove((int) key);
+                assert expectedSet.remove(key) == longSet.remove(key);
+            }else{
+                assert expectedLongMap.merge(key, (long) i, Long::sum) == longMap.addTo(key, i);
+                assert expectedIntMap.merge((int) key, i, Integer::sum) == intMap.addTo((int) key, i);
+                assert expectedSet.add(key) == longSet.add(key);
+            }
+        }
+        assert expectedLongMap.size() == longMap.size() && expectedIntMap.size() == intMap.size();
+        expectedLongMap.forEach((key, value) -> {
+            assert value == longMap.get(key, -1L);
+        });
+        expectedIntMap.forEach((key, value) -> {
+            assert value == intMap.get(key, -1);
+        });
+        assert !longMap.containsKey(2500L) && -1L == longMap.get(2500L, -1L);
+        assert expectedSet.equals(longSet.stream().boxed().collect(Collectors.toSet()));
+    }
+
+    /**
+     * 理想位置都是表的最后一个槽位的 key: 探测每次都绕回表头, 且经过多次扩容后仍然全部冲突
+     */
+    @Test
+    public void collisionAndResizeTest() {
+        long[] keys = collidingLongKeys(300, 1023, 1023);
+        int[] intKeys = collidingIntKeys(300, 1023, 1023);
+        LongLongMap longMap = new LongLongMap(4);
+        IntIntMap intMap = new IntIntMap(4);
+        LongSet longSet = new LongSet(4);
+        for(int i = 0; i < keys.length; i++){
+            assert 0 == longMap.put(keys[i], i);
+            assert 0 == intMap.put(intKeys[i], i);
+            assert longSet.add(keys[i]);
+            assert i + 1 == longMap.size() && i + 1 == intMap.size() && i + 1 == longSet.size();
+        }
+        for(int i = 0; i < keys.length; i++){
+            assert i == longMap.get(keys[i]) && i == intMap.get(intKeys[i]) && longSet.contains(keys[i]);
+            assert !longSet.add(keys[i]);
+            assert i == longMap.put(keys[i], -i);
+        }
+        long[] sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        long[] actualKeys = longMap.keys();
+        Arrays.sort(actualKeys);
+        assert Arrays.equals(sortedKeys, actualKeys);
+        assert Arrays.equals(sortedKeys, sortedSetArray(longSet));
+
+        longMap.clear();
+        intMap.clear();
+        longSet.clear();
+        assert longMap.isEmpty() && intMap.isEmpty() && longSet.isEmpty();
+        assert !longMap.containsKey(keys[0]) && !intMap.containsKey(intKeys[0]) && !longSet.contains(keys[0]);
+    }
+
+    /**
+     * 删除时后面的元素前移: 一段从表尾绕回表头的冲突链中混有理想位置在链中间的 key,
+     * 按随机顺序逐个删除, 每次删除后其余的 key 都还能找到
+     */
+    @Test
+    public void removeTest() {
+        // expectedSize 为 64 时表大小为 128, 以下 key 的个数不会触发扩容
+        long[] tail = collidingLongKeys(30, 127, 126);
+        long[] middle = collidingLongKeys(10, 127, 2);
+        int[] intTail = collidingIntKeys(30, 127, 126);
+        int[] intMiddle = collidingIntKeys(10, 127, 2);
+        List<Integer> order = new ArrayList<>();
+        LongLongMap longMap = new LongLongMap(64);
+        IntIntMap intMap = new IntIntMap(64);
+        LongSet longSet = new LongSet(64);
+        long[] keys = new long[tail.length + middle.length + 1];
+        int[] intKeys = new int[keys.length];
+        for(int i = 0; i < keys.length - 1; i++){
+            keys[i] = i < tail.length ? tail[i] : middle[i - tail.length];
+            intKeys[i] = i < intTail.length ? intTail[i] : intMiddle[i - intTail.length];
+        }
+        // 0 单独存放, 也参与删除
+        for(int i = 0; i < keys.length; i++){
+            longMap.put(keys[i], i + 1);
+            intMap.put(intKeys[i], i + 1);
+            longSet.add(keys[i]);
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(3));
+        Set<Integer> removed = new HashSet<>();
+        for(int index : order){
+            assert longMap.remove(keys[index]) && intMap.remove(intKeys[index]) && longSet.remove(keys[index]);
+            assert !longMap.remove(keys[index]) && !intMap.remove(intKeys[index]) && !longSet.remove(keys[index]);
+            removed.add(index);
+            for(int i = 0; i < keys.length; i++){
+                boolean present = !removed.contains(i);
+                assert present == longMap.containsKey(keys[i]) && present == intMap.containsKey(intKeys[i]);
+                assert present == longSet.contains(keys[i]);
+                assert (present ? i + 1 : -1) == longMap.get(keys[i], -1L);
+                assert (present ? i + 1 : -1) == intMap.get(intKeys[i], -1);
+            }
+            assert keys.length - removed.size() == longMap.size();
+            assert keys.length - removed.size() == intMap.size();
+            assert keys.length - removed.size() == longSet.size();
+        }
+    }
+
+    @Test
+    public void listTest() {
+        IntList intList = IntList.of(3, 1, 2);
+        intList.add(-5);
+        intList.sort();
+        assert "-5,1,2,3".equals(CollectionUtils.mkStr(intList, ",").orElse(null));
+        assert 2 == intList.removeAt(2) && 3 == intList.size() && 3 == intList.get(2);
+        assert "[-5, 1, 3]".equals(intList.toString());
+        LongList longList = new LongList();
+        assert !CollectionUtils.mkStr(longList, ",").isPresent();
+        assert "(1, 2)".equals(CollectionUtils.mkStr(longList.addAll(new long[]{1L, 2L}), "(", ", ", ")"));
+
+        // 逐个添加时多次扩容, 元素不丢失
+        IntList grown = new IntList(0);
+        LongList grownLong = new LongList(1);
+        for(int i = 0; i < 10000; i++){
+            grown.add(i);
+            grownLong.add(-i);
+        }
+        assert 10000 == grown.size() && 9999 == grown.get(9999) && -9999L == grownLong.get(9999);
+        assert grown.equals(IntList.of(grown.toArray())) && grown.hashCode() == IntList.of(grown.toArray()).hashCode();
+        grown.trimToSize();
+        assert 4999 == grown.indexOf(4999);
+    }
+
+    @Test
+    public void grownCapacityTest() {
+        assert PrimitiveArrays.DEFAULT_CAPACITY == PrimitiveArrays.grownCapacity(0, 1);
+        assert 15 == PrimitiveArrays.grownCapacity(10, 11);
+        assert 100 == PrimitiveArrays.grownCapacity(10, 100);
+        // 1.5 倍溢出或超过上限时取上限
+        int large = Integer.MAX_VALUE / 3 * 2;
+        assert PrimitiveArrays.MAX_ARRAY_SIZE == PrimitiveArrays.grownCapacity(large, large + 1);
+        int max = PrimitiveArrays.MAX_ARRAY_SIZE;
+        assert max == PrimitiveArrays.grownCapacity(max - 1, max);
+        try{
+            PrimitiveArrays.grownCapacity(max, max + 1);
+            assert false;
+        }catch (OutOfMemoryError e){
+            // 超过数组大小上限
+        }
+    }
+
+    /**
+     * 按 key 计数与收集为 LongList 的 Collector 在并行流中的结果与顺序流一致
+     */
+    @Test
+    public void collectorTest() {
+        int num = 100000;
+        LongLongMap counts = LongStream.range(0, num).boxed().parallel()
+                .collect(CollectionUtils.countingBy((Long id) -> id % 100));
+        assert 100 == counts.size() && num / 100 == counts.get(42L);
+        LongList ids = LongStream.range(0, num).boxed().parallel().collect(CollectionUtils.toLongList());
+        assert Arrays.equals(LongStream.range(0, num).toArray(), ids.toArray());
+        LongSet set = LongStream.range(0, num).map(i -> i % 1000).boxed().parallel().collect(CollectionUtils.toLongSet());
+        assert 1000 == set.size();
+    }
+
+    /**
+     * 多个线程同时计数
+     */
+    @Test
+    public void stripedCountTest() throws Exception {
+        int num = 100000;
+        StripedLongCountMap striped = new StripedLongCountMap();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try{
+            List<Future<?>> futures = new ArrayList<>();
+            for(int t = 0; t < 4; t++){
+                int offset = t;
+                futures.add(threads.submit(() -> {
+                    for(int i = offset; i < num; i += 4){
+                        striped.increment(i % 1000);
+                    }
+                }));
+            }
+            for(Future<?> future : futures){
+                future.get();
+            }
+        }finally {
+            threads.shutdownNow();
+        }
+        LongLongMap merged = striped.toMap();
+        assert 1000 == merged.size() && 1000 == striped.size();
+        merged.forEach((key, value) -> {
+            assert num / 1000 == value;
+        });
+    }
+
+    private static long[] sortedSetArray(LongSet set){
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * 找出 count 个理想位置(哈希与 mask 的与)等于 slot 的非 0 key
+     */
+    private static long[] collidingLongKeys(int count, int mask, int slot){
+        long[] keys = new long[count];
+        int found = 0;
+        for(long key = 1; found < count; key++){
+            if((PrimitiveHash.mix(key) & mask) == slot){
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    private static int[] collidingIntKeys(int count, int mask, int slot){
+        int[] keys = new int[count];
+        int found = 0;
+        for(int key = 1; found < count; key++){
+            if((PrimitiveHash.mix(key) & mask) == slot){
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
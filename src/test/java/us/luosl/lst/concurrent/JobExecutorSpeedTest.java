@@ -6,12 +6,11 @@ import us.luosl.lslt.concurrent.JobExecutor;
 import us.luosl.lslt.concurrent.JobObserver;
 import us.luosl.lslt.concurrent.JobStatistics;
 
-import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class JobExecutorSpeedTest {
@@ -52,47 +51,38 @@ public class JobExecutorSpeedTest {
     }
 
     /**
-     * 速度测试
+     * 以 job 与 Future 两种方式执行同一批数据, 结果与单线程执行一致; 性能对比见 benchmarks 模块中的 JMH 基准测试
      * @throws ExecutionException
      * @throws InterruptedException
      */
     @Test
     public void speedTest() throws ExecutionException, InterruptedException {
-        List<String> dataSet = generateTestData();
-        AtomicInteger i = new AtomicInteger();
-        long s = 0L;
-        long e = 0L;
-        // 单线程执行
-        s = System.currentTimeMillis();
+        List<String> dataSet = generateTestData().subList(0, 2000);
+        long expected = 0L;
         for(String str: dataSet){
-            dataProcess(str);
+            expected += dataProcess(str);
         }
-        e = System.currentTimeMillis();
-        System.out.println( String.format("单线程执行, 耗时:%f秒", (e - s) / 1000f) );
 
         // 以 job 的方式执行
-        s = System.currentTimeMillis();
         JobExecutor jobExecutor = JobExecutor.create(6, 6);
-        JobObserver<?> observer = jobExecutor.beginJob("速度测试任务");
-        JobStatistics.create(observer).setAllCount((long)dataSet.size()).setInterval(Duration.ofSeconds(2)).startStat();
+        LongAdder jobSum = new LongAdder();
+        JobObserver<Integer> observer = jobExecutor.beginJobWithCallback((Integer r) -> jobSum.add(r), "速度测试任务");
         for(String str: dataSet){
-            jobExecutor.submitWithJobObserver(() -> dataProcess(str) , observer);
+            jobExecutor.submitWithJobObserver(() -> dataProcess(str), observer);
         }
         jobExecutor.awaitComplete(observer);
-        e = System.currentTimeMillis();
-        System.out.println( String.format("以 job 的方式执行,耗时:%f秒", (e - s) / 1000f) );
         assert dataSet.size() == observer.getCompleteCount();
+        assert expected == jobSum.sum();
 
         // 以 Future 的方式执行
-        s = System.currentTimeMillis();
         List<Future<Integer>> fs = dataSet.stream()
                 .map(str -> jobExecutor.submit(() -> dataProcess(str))).collect(Collectors.toList());
-        for(Future f :fs){
-            f.get();
+        long futureSum = 0L;
+        for(Future<Integer> f :fs){
+            futureSum += f.get();
         }
-        e = System.currentTimeMillis();
-        System.out.println( String.format("以 Future 的方式执， 耗时:%f秒", (e - s) / 1000f) );
-
+        assert expected == futureSum;
+        jobExecutor.shutdown();
     }
 
     /**
@@ -137,13 +127,18 @@ public class JobExecutorSpeedTest {
      * @return List<String>
      */
     private List<String> generateTestData(){
-        List<String> strs = new LinkedList<>();
-        for(int i=0; i< 200000; i++){
-            StringBuilder sb = new StringBuilder();
+        int size = 200000;
+        List<String> strs = new ArrayList<>(size);
+        Random random = new Random();
+        for(int i=0; i< size; i++){
+            StringBuilder sb = new StringBuilder(20);
             for(int j =0; j< 10; j++){
-                sb.append(String.format(" %d", new Random().nextInt(10)));
+                if(j > 0){
+                    sb.append(' ');
+                }
+                sb.append(random.nextInt(10));
             }
-            strs.add(sb.toString().replaceFirst(" ", ""));
+            strs.add(sb.toString());
         }
         return strs;
     }